@@ -0,0 +1,124 @@
+package com.balance.excel.merge;
+
+import com.balance.excel.merge.model.IncrementalDeduplicator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the summary of a directory up to date. Only added or modified files are parsed again,
+ * rows of deleted files are retracted, and only the phones of changed rows are merged again.
+ */
+@Slf4j
+class DirectoryWatcher {
+    private final ExcelMerger merger;
+    private final File inputDir;
+    private final long debounceMillis;
+    private final IncrementalDeduplicator deduplicator;
+
+    DirectoryWatcher(ExcelMerger merger, File inputDir, long debounceMillis) {
+        this.merger = merger;
+        this.inputDir = inputDir;
+        this.debounceMillis = debounceMillis;
+        this.deduplicator = new IncrementalDeduplicator(merger.getOptions().isAccumulateDistinctValues(),
+                merger.getSchema());
+    }
+
+    /**
+     * Merges all files, then merges changes until the thread is interrupted.
+     */
+    void watch() {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            inputDir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            File[] files = inputDir.listFiles();
+            Set<File> changedFiles = new LinkedHashSet<>();
+            if (files != null) {
+                changedFiles.addAll(Arrays.asList(files));
+            }
+            while (true) {
+                update(changedFiles);
+                changedFiles = awaitChanges(watchService);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Stop watching {}.", inputDir.getAbsolutePath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed in watching " + inputDir.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Waits for a change, then collects further changes until none came within debounceMillis.
+     */
+    private Set<File> awaitChanges(WatchService watchService) throws InterruptedException {
+        Set<File> changedFiles = new LinkedHashSet<>();
+        WatchKey key = watchService.take();
+        while (key != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events were lost, look at every file again
+                    File[] files = inputDir.listFiles();
+                    if (files != null) {
+                        changedFiles.addAll(Arrays.asList(files));
+                    }
+                    changedFiles.addAll(deduplicatedFiles());
+                    continue;
+                }
+                changedFiles.add(new File(inputDir, ((Path) event.context()).toString()));
+            }
+            if (!key.reset()) {
+                throw new IllegalStateException("Input directory is not accessible any more: " + inputDir.getAbsolutePath());
+            }
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        return changedFiles;
+    }
+
+    private Set<File> deduplicatedFiles() {
+        Set<File> files = new LinkedHashSet<>();
+        for (String sourceName : deduplicator.getSourceNames()) {
+            files.add(new File(sourceName));
+        }
+        return files;
+    }
+
+    private void update(Set<File> changedFiles) {
+        boolean changed = false;
+        for (File file : changedFiles) {
+            if (isOutput(file)) {
+                continue;
+            }
+            String sourceName = file.getAbsolutePath();
+            if (file.isFile()) {
+                deduplicator.put(sourceName, merger.readSheets(file));
+                changed = true;
+            } else if (deduplicator.contains(sourceName)) {
+                log.info("Retract rows of deleted file:{}.", file.getName());
+                deduplicator.remove(sourceName);
+                changed = true;
+            }
+        }
+        if (changed) {
+            merger.saveSummary(deduplicator, merger.getSummaryFile());
+        }
+    }
+
+    private boolean isOutput(File file) {
+        File summaryFile = merger.getSummaryFile().getAbsoluteFile();
+        return ShardedExcelWriter.isOutputOf(summaryFile, file);
+    }
+}
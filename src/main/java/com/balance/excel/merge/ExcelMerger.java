@@ -1,109 +1,276 @@
 package com.balance.excel.merge;
 
-import com.balance.excel.merge.excel.SheetAgency;
 import com.balance.excel.merge.model.ExcelSheetData;
-import com.balance.excel.merge.model.Pair;
+import com.balance.excel.merge.model.ExternalDeduplicator;
+import com.balance.excel.merge.model.RowSource;
+import com.balance.excel.merge.model.SchemaRegistry;
+import com.balance.excel.merge.reader.ParseCache;
+import com.balance.excel.merge.reader.WorkbookSource;
+import com.balance.excel.merge.writer.CsvWriter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.springframework.util.CollectionUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 @Slf4j
 public class ExcelMerger {
     private final List<File> inputFiles;
     private final File summaryFile;
+    private final MergeOptions options;
+    /**
+     * registry of all sheets read in the current run
+     */
+    private SchemaRegistry schema;
+    private ExecutorService sheetExecutor;
+    private ParseCache parseCache;
+    private MergeCheckpoint checkpoint;
 
     public ExcelMerger(File[] inputFiles, File summaryFile) {
+        this(inputFiles, summaryFile, MergeOptions.defaults());
+    }
+
+    public ExcelMerger(File[] inputFiles, File summaryFile, MergeOptions options) {
         this.inputFiles = Arrays.asList(inputFiles);
         this.summaryFile = summaryFile;
+        this.options = options;
     }
 
     public void merge() {
-        ExcelSheetData excelSheetData = inputFiles.stream()
-                .map(file -> openExcel(file))
-                .filter(p -> Objects.nonNull(p.getValue()))
-                .flatMap(nameWorkBookPair -> listAllSheets(nameWorkBookPair))
-                .map(sheetPair -> ExcelSheetData.parseFromSheet(sheetPair.getValue(), sheetPair.getKey()))
-                .filter(excelData -> !CollectionUtils.isEmpty(excelData.getRows()))
-                .reduce(new ExcelSheetData(),
-                        (a, b) -> a.merge(b));
-        excelSheetData.distinctByPhone();
-
-        saveToExcel(excelSheetData, summaryFile);
-    }
-
-    private void saveToExcel(ExcelSheetData excelSheetData, File summaryFile) {
-        XSSFWorkbook workbook = new XSSFWorkbook();
-        SheetAgency sheetAgency = SheetAgency.of(workbook, "summary");
-        excelSheetData.getTitles().add(ExcelSheetData.EXCEL_LOCATION);
-        sheetAgency.write(excelSheetData.getTitles().toArray())
-                .newLine();
-
-        List<String> values = new ArrayList<>();
-        for (Map<String, String> row : excelSheetData.getRows()) {
-            values.clear();
-            for (String title : excelSheetData.getTitles()) {
-                values.add(row.get(title));
+        run(() -> {
+            checkpoint = options.getCheckpointDirectory() == null
+                    ? null
+                    : MergeCheckpoint.open(options.getCheckpointDirectory(), inputFiles, summaryFile);
+            boolean saved = options.isExternalDedup() ? mergeExternally() : mergeInMemory();
+            if (checkpoint != null && saved) {
+                checkpoint.finish();
+            }
+        });
+    }
+
+    /**
+     * Merges the files of inputDir, then keeps the summary up to date with changes in inputDir until interrupted.
+     * @param debounceMillis changes are merged once no further change came within this time
+     */
+    public void watch(File inputDir, long debounceMillis) {
+        run(() -> new DirectoryWatcher(this, inputDir, debounceMillis).watch());
+    }
+
+    private void run(Runnable task) {
+        schema = new SchemaRegistry();
+        sheetExecutor = options.getSheetWorkerCount() > 1
+                ? Executors.newFixedThreadPool(options.getSheetWorkerCount())
+                : null;
+        parseCache = createParseCache();
+        try {
+            task.run();
+        } finally {
+            if (sheetExecutor != null) {
+                sheetExecutor.shutdownNow();
+            }
+            if (parseCache != null) {
+                parseCache.trim();
+            }
+            schema = null;
+        }
+    }
+
+    private ParseCache createParseCache() {
+        if (options.getParseCacheDirectory() == null) {
+            return null;
+        }
+        ParseCache cache = new ParseCache(options.getParseCacheDirectory(), options.getParseCacheMaxBytes());
+        if (options.isInvalidateParseCache()) {
+            cache.invalidate();
+        }
+        return cache;
+    }
+
+    private boolean mergeInMemory() {
+        ExcelSheetData excelSheetData = new ExcelSheetData(schema);
+        readAll(excelSheetData::merge);
+        excelSheetData.distinctByPhone(options.isAccumulateDistinctValues());
+
+        return saveSummary(excelSheetData, summaryFile);
+    }
+
+    private boolean mergeExternally() {
+        try (ExternalDeduplicator deduplicator = new ExternalDeduplicator(
+                options.getSpillDirectory(), options.getDedupMemoryBudget(), options.isAccumulateDistinctValues())) {
+            readAll(sheetData -> {
+                try {
+                    deduplicator.add(sheetData);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed in spilling rows of " + sheetData.getTitles(), e);
+                }
+            });
+
+            return saveSummary(deduplicator, summaryFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed in deduplicating rows on disk.", e);
+        }
+    }
+
+    /**
+     * Passes every sheet with data of the input files to the combiner, in input order.
+     */
+    private void readAll(Consumer<ExcelSheetData> combiner) {
+        if (options.getWorkerCount() > 1) {
+            readAllParallel(options.getWorkerCount(), combiner);
+            return;
+        }
+        for (File file : inputFiles) {
+            combine(combiner, readCheckpointed(file));
+        }
+    }
+
+    /**
+     * Every file is parsed by a worker into its own ExcelSheetData, the results are combined on the calling
+     * thread in input order. At most two files per worker are in flight, so parsed but not yet combined
+     * data stays bounded.
+     */
+    private void readAllParallel(int workerCount, Consumer<ExcelSheetData> combiner) {
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        try {
+            Deque<Future<List<ExcelSheetData>>> pendingFiles = new ArrayDeque<>();
+            Iterator<File> fileIterator = inputFiles.iterator();
+            while (fileIterator.hasNext() || !pendingFiles.isEmpty()) {
+                while (fileIterator.hasNext() && pendingFiles.size() < workerCount * 2) {
+                    File file = fileIterator.next();
+                    pendingFiles.add(executor.submit(() -> readCheckpointed(file)));
+                }
+                combine(combiner, pendingFiles.poll().get());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted in reading input files.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed in reading input files.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            sheetAgency.write(values.toArray())
-                    .newLine();
+    private static void combine(Consumer<ExcelSheetData> combiner, List<ExcelSheetData> sheetDatas) {
+        for (ExcelSheetData sheetData : sheetDatas) {
+            if (!sheetData.isEmpty()) {
+                combiner.accept(sheetData);
+            }
+        }
+    }
+
+    /**
+     * Writes the summary in the format of the options to a temp file next to summaryFile first and then replaces
+     * summaryFile with it, so readers of summaryFile never see a partly written file.
+     * @return whether the summary was written
+     */
+    boolean saveSummary(RowSource rowSource, File summaryFile) {
+        SummaryFormat format = options.getSummaryFormat();
+        if (format == SummaryFormat.XLSX) {
+            boolean saved = new ShardedExcelWriter(this::createSummaryWorkbook, options.getShardRowCount(), options.isShardFiles())
+                    .write(rowSource, summaryTitles(rowSource), summaryFile);
+            if (saved) {
+                log.info("Finished merge excel files to {}", summaryFile.getName());
+            }
+            return saved;
         }
 
+        File tempFile = new File(summaryFile.getAbsoluteFile().getParentFile(), "." + summaryFile.getName() + ".tmp");
+        if (!saveToCsv(rowSource, tempFile, format == SummaryFormat.TSV ? '\t' : ',')) {
+            return false;
+        }
         try {
-            workbook.write(new FileOutputStream(summaryFile));
+            ShardedExcelWriter.moveReplacing(tempFile, summaryFile);
         } catch (IOException e) {
-            e.printStackTrace();
+            log.info("Failed to replace {} with the new summary.", summaryFile.getAbsolutePath(), e);
+            return false;
         }
         log.info("Finished merge excel files to {}", summaryFile.getName());
+        return true;
     }
 
-    private Stream<Pair<String, Sheet>> listAllSheets(Pair<String, Workbook> nameWorkbookPair) {
-        Workbook workbook = nameWorkbookPair.getValue();
-        int count = workbook.getNumberOfSheets();
-        List<Pair<String, Sheet>> sheets = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            Sheet sheet = workbook.getSheetAt(i);
-            sheets.add(new Pair<>(
-                    nameWorkbookPair.getKey(),
-                    sheet));
+    private static List<String> summaryTitles(RowSource rowSource) {
+        List<String> titles = new ArrayList<>(rowSource.getTitles());
+        titles.add(ExcelSheetData.EXCEL_LOCATION);
+        return titles;
+    }
+
+    private boolean saveToCsv(RowSource rowSource, File file, char delimiter) {
+        List<String> titles = summaryTitles(rowSource);
+        try (CsvWriter writer = new CsvWriter(file, delimiter, options.isSummaryBom(), options.isGzipSummary())) {
+            writer.writeRow(titles.toArray());
+            rowSource.forEachRow(titles, values -> {
+                try {
+                    writer.writeRow(values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            log.info("Failed to write summary:{}.", file.getAbsolutePath(), e);
+            return false;
         }
-        return sheets.stream();
     }
 
-    private Pair<String, Workbook> openExcel(File file) {
-        Workbook workbook = openWithHSSF(file);
-        if (workbook == null) {
-            workbook = openWithXssf(file);
+    private Workbook createSummaryWorkbook() {
+        if (!options.isStreamingWrite()) {
+            return new XSSFWorkbook();
         }
-        return new Pair<>(file.getName(), workbook);
+        return new SXSSFWorkbook(null, options.getRowWindowSize(),
+                options.isCompressTempFiles(), options.isSharedStrings());
+    }
 
+    File getSummaryFile() {
+        return summaryFile;
     }
 
-    private Workbook openWithXssf(File file) {
-        try {
-            return new XSSFWorkbook(file);
-        } catch (Exception e) {
-            log.info("Failed to open file:{} with format XSSF.", file.getAbsolutePath());
+    MergeOptions getOptions() {
+        return options;
+    }
+
+    SchemaRegistry getSchema() {
+        return schema;
+    }
+
+    /**
+     * Reads the file from the checkpoint if an earlier run has read it already, and records it otherwise.
+     */
+    private List<ExcelSheetData> readCheckpointed(File file) {
+        if (checkpoint == null) {
+            return readSheets(file);
+        }
+        if (checkpoint.isCompleted(file)) {
+            log.info("Read file:{} from checkpoint.", file.getName());
+            return checkpoint.load(file, schema);
         }
-        return null;
+        List<ExcelSheetData> sheetDatas = readSheets(file);
+        checkpoint.complete(file, sheetDatas);
+        return sheetDatas;
     }
 
-    private Workbook openWithHSSF(File file) {
-        try {
-            return new HSSFWorkbook(new FileInputStream(file));
-        } catch (Exception e) {
-            log.info("Failed to open file:{} with format HSSF.", file.getAbsolutePath());
+    List<ExcelSheetData> readSheets(File file) {
+        if (parseCache != null) {
+            List<ExcelSheetData> cachedSheets = parseCache.get(file, schema);
+            if (cachedSheets != null) {
+                log.info("Read file:{} from parse cache.", file.getName());
+                return cachedSheets;
+            }
+        }
+        List<ExcelSheetData> sheetDatas = WorkbookSource.of(file)
+                .readSheets(options.isStreaming(), sheetExecutor, schema);
+        if (parseCache != null && !sheetDatas.isEmpty()) {
+            parseCache.put(file, sheetDatas);
         }
-        return null;
+        return sheetDatas;
     }
 }
@@ -0,0 +1,238 @@
+package com.balance.excel.merge;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.SchemaRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records the input files a merge has read, with their parsed sheets, in a working directory.
+ * A run with the same input files and summary finds the checkpoint and reads the recorded files from it
+ * instead of parsing them again. The checkpoint is removed once the summary is written, only its own files
+ * are deleted from the directory.
+ */
+@Slf4j
+class MergeCheckpoint {
+    private static final String MANIFEST = "completed.txt";
+    private static final Pattern DATA_FILE = Pattern.compile("file-(\\d+)\\.bin(\\.tmp)?");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final Map<String, Integer> fileIndexes = new HashMap<>();
+    private final Set<Integer> completedFiles = new HashSet<>();
+
+    private MergeCheckpoint(File directory, List<File> inputFiles) {
+        this.directory = directory;
+        for (int i = 0; i < inputFiles.size(); i++) {
+            fileIndexes.put(inputFiles.get(i).getAbsolutePath(), i);
+        }
+    }
+
+    /**
+     * Opens the checkpoint of the same run in directory, or starts a new one if there is none.
+     */
+    static MergeCheckpoint open(File directory, List<File> inputFiles, File summaryFile) {
+        MergeCheckpoint checkpoint = new MergeCheckpoint(directory, inputFiles);
+        String fingerprint = fingerprint(inputFiles, summaryFile);
+        File manifest = new File(directory, MANIFEST);
+        try {
+            if (manifest.isFile()) {
+                if (checkpoint.resume(manifest, fingerprint)) {
+                    log.info("Resume from checkpoint with {} of {} files read.", checkpoint.completedFiles.size(), inputFiles.size());
+                    return checkpoint;
+                }
+                log.info("Discard checkpoint of other input files in {}.", directory.getAbsolutePath());
+                checkpoint.deleteFiles();
+            }
+            Files.createDirectories(directory.toPath());
+            Files.write(manifest.toPath(), (fingerprint + "\n").getBytes(StandardCharsets.UTF_8));
+            return checkpoint;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed in opening checkpoint in " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Reads the completed files from a manifest of the same run. The last line may be cut off by a crash
+     * while it was appended, it is then dropped from the manifest together with the data files which are
+     * not recorded as completed.
+     * @return false if the manifest belongs to another run or is broken before its last line
+     */
+    private boolean resume(File manifest, String fingerprint) throws IOException {
+        String[] lines = new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).split("\n", -1);
+        if (!lines[0].equals(fingerprint) || lines.length < 2) {
+            return false;
+        }
+        // a complete manifest ends with a line break, so its last element is empty
+        int lastLine = lines.length - 1;
+        boolean cutOff = !lines[lastLine].isEmpty();
+        for (int i = 1; i < lastLine; i++) {
+            try {
+                completedFiles.add(Integer.parseInt(lines[i].trim()));
+            } catch (NumberFormatException e) {
+                if (i < lastLine - 1) {
+                    log.info("Broken line:{} in checkpoint manifest {}.", i + 1, manifest.getAbsolutePath());
+                    completedFiles.clear();
+                    return false;
+                }
+                cutOff = true;
+                lastLine = i;
+            }
+        }
+        if (cutOff) {
+            log.info("Drop incomplete last line of checkpoint manifest {}.", manifest.getAbsolutePath());
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < lastLine; i++) {
+                content.append(lines[i]).append('\n');
+            }
+            File tempManifest = new File(directory, MANIFEST + ".tmp");
+            Files.write(tempManifest.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempManifest.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        for (File file : checkpointFiles()) {
+            Matcher matcher = DATA_FILE.matcher(file.getName());
+            boolean completedData = matcher.matches() && matcher.group(2) == null
+                    && completedFiles.contains(Integer.valueOf(matcher.group(1)));
+            if (!completedData && !file.getName().equals(MANIFEST)) {
+                Files.delete(file.toPath());
+            }
+        }
+        return true;
+    }
+
+    boolean isCompleted(File file) {
+        Integer index = fileIndexes.get(file.getAbsolutePath());
+        synchronized (this) {
+            return index != null && completedFiles.contains(index);
+        }
+    }
+
+    List<ExcelSheetData> load(File file, SchemaRegistry schema) {
+        File dataFile = dataFile(fileIndexes.get(file.getAbsolutePath()));
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFile), BUFFER_SIZE))) {
+            int sheetCount = input.readInt();
+            List<ExcelSheetData> sheetDatas = new ArrayList<>(sheetCount);
+            for (int i = 0; i < sheetCount; i++) {
+                sheetDatas.add(ExcelSheetData.readFrom(input, schema));
+            }
+            return sheetDatas;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed in loading checkpoint of " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Saves the sheets of the file, then records the file as completed.
+     */
+    void complete(File file, List<ExcelSheetData> sheetDatas) {
+        Integer index = fileIndexes.get(file.getAbsolutePath());
+        if (index == null) {
+            return;
+        }
+        File dataFile = dataFile(index);
+        File tempFile = new File(directory, dataFile.getName() + ".tmp");
+        try {
+            try (FileOutputStream fileOutput = new FileOutputStream(tempFile);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput, BUFFER_SIZE))) {
+                output.writeInt(sheetDatas.size());
+                for (ExcelSheetData sheetData : sheetDatas) {
+                    sheetData.writeTo(output);
+                }
+                output.flush();
+                fileOutput.getFD().sync();
+            }
+            Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            synchronized (this) {
+                try (Writer writer = Files.newBufferedWriter(new File(directory, MANIFEST).toPath(),
+                        StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                    writer.write(index + "\n");
+                }
+                completedFiles.add(index);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed in saving checkpoint of " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Removes the checkpoint after the summary is written.
+     */
+    void finish() {
+        try {
+            deleteFiles();
+        } catch (IOException e) {
+            log.info("Failed to remove checkpoint in {}.", directory.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Deletes the files of the checkpoint, other files in the directory are kept.
+     * The directory itself is removed only if it is empty then.
+     */
+    private void deleteFiles() throws IOException {
+        for (File file : checkpointFiles()) {
+            Files.delete(file.toPath());
+        }
+        directory.delete();
+    }
+
+    /**
+     * @return the manifest, data files and temporary files of the checkpoint in the directory
+     */
+    private List<File> checkpointFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.equals(MANIFEST) || name.equals(MANIFEST + ".tmp")
+                || DATA_FILE.matcher(name).matches());
+        return files == null ? new ArrayList<>() : Arrays.asList(files);
+    }
+
+    private File dataFile(int index) {
+        return new File(directory, "file-" + index + ".bin");
+    }
+
+    /**
+     * Identifies a run by the path, size and modified time of every input file and the summary path.
+     */
+    private static String fingerprint(List<File> inputFiles, File summaryFile) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (File file : inputFiles) {
+                String entry = file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified() + "\n";
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update(summaryFile.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : digest.digest()) {
+                fingerprint.append(String.format("%02x", b));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+    }
+}
@@ -1,23 +1,131 @@
 package com.balance.excel.merge;
 
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 public class MergeCommand implements CommandLineRunner {
+    private static final String WATCH_OPTION = "--watch";
+    private static final String DEBOUNCE_OPTION = "--debounce=";
+    private static final String BOM_OPTION = "--bom";
+    private static final String WORKERS_OPTION = "--workers=";
+    private static final String SHEET_WORKERS_OPTION = "--sheet-workers=";
+    private static final String EXTERNAL_DEDUP_OPTION = "--external-dedup";
+    private static final String DEDUP_MEMORY_OPTION = "--dedup-memory=";
+    private static final String SPILL_DIR_OPTION = "--spill-dir=";
+    private static final String CACHE_DIR_OPTION = "--cache-dir=";
+    private static final String CACHE_MAX_OPTION = "--cache-max=";
+    private static final String CLEAR_CACHE_OPTION = "--clear-cache";
+    private static final String CHECKPOINT_DIR_OPTION = "--checkpoint-dir=";
+    private static final String SHARD_FILES_OPTION = "--shard-files";
+    private static final String SHARD_ROWS_OPTION = "--shard-rows=";
+    /** the sheet row limit less the title row */
+    private static final int MAX_SHARD_ROW_COUNT = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 2000;
+
     @Override
     public void run(String... args) {
-        if (args.length < 2) {
-            System.out.println("stl-editor input.stl output.plc vars.txt");
+        boolean watch = false;
+        boolean bom = false;
+        long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        // the sheets of a streamed xlsx file are parsed by as many threads as files by default
+        Integer sheetWorkerCount = null;
+        MergeOptions.MergeOptionsBuilder builder = MergeOptions.builder();
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (WATCH_OPTION.equals(arg)) {
+                watch = true;
+            } else if (BOM_OPTION.equals(arg)) {
+                bom = true;
+            } else if (arg.startsWith(DEBOUNCE_OPTION)) {
+                debounceMillis = Long.parseLong(arg.substring(DEBOUNCE_OPTION.length()));
+            } else if (arg.startsWith(WORKERS_OPTION)) {
+                workerCount = Integer.parseInt(arg.substring(WORKERS_OPTION.length()));
+            } else if (arg.startsWith(SHEET_WORKERS_OPTION)) {
+                sheetWorkerCount = Integer.parseInt(arg.substring(SHEET_WORKERS_OPTION.length()));
+            } else if (EXTERNAL_DEDUP_OPTION.equals(arg)) {
+                builder.externalDedup(true);
+            } else if (arg.startsWith(DEDUP_MEMORY_OPTION)) {
+                builder.dedupMemoryBudget(parseSize(arg.substring(DEDUP_MEMORY_OPTION.length())));
+            } else if (arg.startsWith(SPILL_DIR_OPTION)) {
+                builder.spillDirectory(new File(arg.substring(SPILL_DIR_OPTION.length())));
+            } else if (arg.startsWith(CACHE_DIR_OPTION)) {
+                builder.parseCacheDirectory(new File(arg.substring(CACHE_DIR_OPTION.length())));
+            } else if (arg.startsWith(CACHE_MAX_OPTION)) {
+                builder.parseCacheMaxBytes(parseSize(arg.substring(CACHE_MAX_OPTION.length())));
+            } else if (CLEAR_CACHE_OPTION.equals(arg)) {
+                builder.invalidateParseCache(true);
+            } else if (arg.startsWith(CHECKPOINT_DIR_OPTION)) {
+                builder.checkpointDirectory(new File(arg.substring(CHECKPOINT_DIR_OPTION.length())));
+            } else if (SHARD_FILES_OPTION.equals(arg)) {
+                builder.shardFiles(true);
+            } else if (arg.startsWith(SHARD_ROWS_OPTION)) {
+                int shardRowCount = Integer.parseInt(arg.substring(SHARD_ROWS_OPTION.length()));
+                if (shardRowCount < 1 || shardRowCount > MAX_SHARD_ROW_COUNT) {
+                    System.out.println("--shard-rows takes 1 to " + MAX_SHARD_ROW_COUNT + " rows.");
+                    return;
+                }
+                builder.shardRowCount(shardRowCount);
+            } else {
+                paths.add(arg);
+            }
+        }
+        if (paths.size() < 2) {
+            System.out.println("excel-merge [--watch [--debounce=millis]] [--bom]"
+                    + " [--workers=count] [--sheet-workers=count]"
+                    + " [--external-dedup [--dedup-memory=size[k|m|g]] [--spill-dir=dir]]"
+                    + " [--cache-dir=dir [--cache-max=size[k|m|g]] [--clear-cache]]"
+                    + " [--checkpoint-dir=dir] [--shard-files] [--shard-rows=count]"
+                    + " inputDir summary.xlsx|.csv|.tsv[.gz]");
             return;
         }
 
-        File inputDir = new File(args[0]);
-        File summaryFile = new File(args[1]);
+        File inputDir = new File(paths.get(0));
+        File summaryFile = new File(paths.get(1));
 
-        new ExcelMerger(inputDir.listFiles(), summaryFile)
-                .merge();
+        MergeOptions options = builder
+                .summaryFormat(SummaryFormat.of(summaryFile))
+                .gzipSummary(SummaryFormat.isGzip(summaryFile))
+                .summaryBom(bom)
+                .workerCount(workerCount)
+                .sheetWorkerCount(sheetWorkerCount != null ? sheetWorkerCount : workerCount)
+                .build();
+        ExcelMerger merger = new ExcelMerger(inputDir.listFiles(), summaryFile, options);
+        if (watch) {
+            merger.watch(inputDir, debounceMillis);
+        } else {
+            merger.merge();
+        }
+    }
+
+    /**
+     * @param size a number of bytes, optionally followed by k, m or g
+     */
+    private static long parseSize(String size) {
+        String digits = size.toLowerCase();
+        int shift = 0;
+        switch (digits.isEmpty() ? ' ' : digits.charAt(digits.length() - 1)) {
+            case 'k':
+                shift = 10;
+                break;
+            case 'm':
+                shift = 20;
+                break;
+            case 'g':
+                shift = 30;
+                break;
+            default:
+                break;
+        }
+        if (shift > 0) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        return Long.parseLong(digits) << shift;
     }
 }
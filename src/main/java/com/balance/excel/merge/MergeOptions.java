@@ -0,0 +1,127 @@
+package com.balance.excel.merge;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+
+@Getter
+@Builder
+public class MergeOptions {
+    /**
+     * Read xlsx and xls inputs with the event models instead of loading the whole workbook.
+     */
+    @Builder.Default
+    private boolean streaming = true;
+
+    /**
+     * Write the summary with SXSSF, only the last rowWindowSize rows are kept in memory.
+     */
+    @Builder.Default
+    private boolean streamingWrite = true;
+
+    @Builder.Default
+    private int rowWindowSize = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+
+    /**
+     * Gzip the temp files of flushed rows in streaming write.
+     */
+    @Builder.Default
+    private boolean compressTempFiles = false;
+
+    /**
+     * Use a shared strings table in streaming write instead of inline strings.
+     * It makes smaller files but keeps all distinct strings in memory.
+     */
+    @Builder.Default
+    private boolean sharedStrings = false;
+
+    /**
+     * Number of threads parsing input files. Files are still combined in input order.
+     */
+    @Builder.Default
+    private int workerCount = 1;
+
+    /**
+     * Number of threads parsing the sheets of one streamed xlsx file, each sheet is its own task.
+     */
+    @Builder.Default
+    private int sheetWorkerCount = 1;
+
+    /**
+     * Deduplicate rows on disk: rows are hash partitioned by phone into spill files,
+     * and each partition is deduplicated within dedupMemoryBudget.
+     */
+    @Builder.Default
+    private boolean externalDedup = false;
+
+    @Builder.Default
+    private long dedupMemoryBudget = 256L * 1024 * 1024;
+
+    /**
+     * Where spill files are written, the system temp directory if null.
+     */
+    private File spillDirectory;
+
+    /**
+     * Merge duplicated rows through a distinct value set per cell instead of appending to the joined text.
+     */
+    @Builder.Default
+    private boolean accumulateDistinctValues = false;
+
+    /**
+     * Where parsed input files are cached between runs, no cache if null.
+     */
+    private File parseCacheDirectory;
+
+    /**
+     * Cache entries used least recently are removed when the cache grows beyond this size.
+     */
+    @Builder.Default
+    private long parseCacheMaxBytes = 1024L * 1024 * 1024;
+
+    /**
+     * Remove all cache entries before merging.
+     */
+    @Builder.Default
+    private boolean invalidateParseCache = false;
+
+    /**
+     * Working directory where every read input file is recorded with its parsed sheets.
+     * A crashed merge started again with the same inputs resumes from there, no checkpoint if null.
+     */
+    private File checkpointDirectory;
+
+    @Builder.Default
+    private SummaryFormat summaryFormat = SummaryFormat.XLSX;
+
+    /**
+     * Start a csv or tsv summary with the UTF-8 byte order mark.
+     */
+    @Builder.Default
+    private boolean summaryBom = false;
+
+    /**
+     * Gzip a csv or tsv summary.
+     */
+    @Builder.Default
+    private boolean gzipSummary = false;
+
+    /**
+     * Data rows per sheet of an xlsx summary, further rows go to the next shard. At most 1048575,
+     * the sheet row limit less the title row.
+     */
+    @Builder.Default
+    private int shardRowCount = 1048575;
+
+    /**
+     * Put every shard of an xlsx summary in its own file, written by its own thread, instead of a new sheet.
+     */
+    @Builder.Default
+    private boolean shardFiles = false;
+
+    public static MergeOptions defaults() {
+        return MergeOptions.builder().build();
+    }
+}
@@ -0,0 +1,343 @@
+package com.balance.excel.merge;
+
+import com.alibaba.fastjson.JSON;
+import com.balance.excel.merge.excel.SheetAgency;
+import com.balance.excel.merge.model.RowSource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the summary as workbooks of at most shardRowCount rows per sheet. Further rows go to a new sheet,
+ * or with shardFiles to a new file summary-2.xlsx, summary-3.xlsx and so on. Every file is built by its own
+ * writer thread, rows are handed over through a bounded queue. A summary of more than one shard is described
+ * by summary.xlsx.manifest.json next to it.
+ */
+@Slf4j
+class ShardedExcelWriter {
+    private static final String SHEET_NAME = "summary";
+    private static final String MANIFEST_SUFFIX = ".manifest.json";
+    private static final int QUEUE_SIZE = 8192;
+    private static final Object[] END_OF_ROWS = new Object[0];
+
+    private final Supplier<Workbook> workbookFactory;
+    private final int shardRowCount;
+    private final boolean shardFiles;
+
+    ShardedExcelWriter(Supplier<Workbook> workbookFactory, int shardRowCount, boolean shardFiles) {
+        this.workbookFactory = workbookFactory;
+        this.shardRowCount = shardRowCount;
+        this.shardFiles = shardFiles;
+    }
+
+    /**
+     * @return whether the summary was written
+     */
+    boolean write(RowSource rowSource, List<String> titles, File summaryFile) {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        List<Shard> shards = new ArrayList<>();
+        try {
+            ShardRouter router = new ShardRouter(titles, summaryFile, shards, executor);
+            rowSource.forEachRow(titles, router);
+            router.finish();
+            publish(shards, summaryFile);
+            return true;
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            log.info("Failed to write summary:{}.", summaryFile.getAbsolutePath(), e);
+            for (Shard shard : shards) {
+                if (shard.tempFile != null) {
+                    shard.tempFile.delete();
+                }
+            }
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Moves the written shards to their final names and records the layout if there is more than one shard.
+     */
+    private void publish(List<Shard> shards, File summaryFile) throws IOException {
+        File manifestFile = new File(summaryFile.getAbsoluteFile().getParentFile(), summaryFile.getName() + MANIFEST_SUFFIX);
+        int fileCount = shards.get(shards.size() - 1).fileIndex;
+        List<ShardEntry> entries = new ArrayList<>();
+        long totalRowCount = 0;
+        for (Shard shard : shards) {
+            File shardFile = shard.fileIndex == 1 ? summaryFile : shardFile(summaryFile, shard.fileIndex);
+            if (shard.tempFile != null) {
+                moveReplacing(shard.tempFile, shardFile);
+            }
+            entries.add(new ShardEntry(shardFile.getName(), shard.sheetName, shard.firstRow, shard.rowCount));
+            totalRowCount += shard.rowCount;
+        }
+        deleteStaleShards(summaryFile, fileCount);
+        if (shards.size() > 1) {
+            Files.write(manifestFile.toPath(), JSON.toJSONString(entries, true).getBytes(StandardCharsets.UTF_8));
+            log.info("Wrote {} rows in {} shards, see {}.", totalRowCount, shards.size(), manifestFile.getName());
+        } else {
+            Files.deleteIfExists(manifestFile.toPath());
+        }
+    }
+
+    /**
+     * Deletes the files summary-N.xlsx of an earlier run which wrote more files than fileCount.
+     */
+    private static void deleteStaleShards(File summaryFile, int fileCount) throws IOException {
+        Pattern shardPattern = shardPattern(summaryFile);
+        File[] staleFiles = summaryFile.getAbsoluteFile().getParentFile().listFiles((dir, name) -> {
+            Matcher matcher = shardPattern.matcher(name);
+            return matcher.matches()
+                    && (matcher.group(1).length() > 9 || Integer.parseInt(matcher.group(1)) > fileCount);
+        });
+        if (staleFiles != null) {
+            for (File staleFile : staleFiles) {
+                log.info("Delete shard:{} of an earlier summary.", staleFile.getName());
+                Files.delete(staleFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * @return summary-2.xlsx for summary.xlsx and fileIndex 2, summary.xlsx itself is the file of index 1
+     */
+    static File shardFile(File summaryFile, int fileIndex) {
+        String name = summaryFile.getName();
+        int dot = name.lastIndexOf('.');
+        String shardName = dot > 0
+                ? name.substring(0, dot) + "-" + fileIndex + name.substring(dot)
+                : name + "-" + fileIndex;
+        return new File(summaryFile.getAbsoluteFile().getParentFile(), shardName);
+    }
+
+    /**
+     * @return whether the file is a shard or the manifest of summaryFile, or a temp file of them
+     */
+    static boolean isOutputOf(File summaryFile, File file) {
+        String name = file.getName();
+        String summaryName = summaryFile.getName();
+        return name.equals(summaryName) || name.equals(summaryName + MANIFEST_SUFFIX)
+                || shardPattern(summaryFile).matcher(name).matches() || name.startsWith("." + summaryName);
+    }
+
+    /**
+     * @return the pattern of the names of shard files, the file index is group 1
+     */
+    private static Pattern shardPattern(File summaryFile) {
+        String summaryName = summaryFile.getName();
+        int dot = summaryName.lastIndexOf('.');
+        return Pattern.compile(dot > 0
+                ? Pattern.quote(summaryName.substring(0, dot)) + "-(\\d+)" + Pattern.quote(summaryName.substring(dot))
+                : Pattern.quote(summaryName) + "-(\\d+)");
+    }
+
+    static void moveReplacing(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Passes rows to the current shard and opens the next one when it is full.
+     */
+    private class ShardRouter implements Consumer<String[]> {
+        private final List<String> titles;
+        private final File summaryFile;
+        private final List<Shard> shards;
+        private final ExecutorService executor;
+        private final List<FileWriterTask> fileWriters = new ArrayList<>();
+        private FileWriterTask fileWriter;
+        private Shard shard;
+        private long rowNumber = 1;
+
+        ShardRouter(List<String> titles, File summaryFile, List<Shard> shards, ExecutorService executor) {
+            this.titles = titles;
+            this.summaryFile = summaryFile;
+            this.shards = shards;
+            this.executor = executor;
+        }
+
+        @Override
+        public void accept(String[] values) {
+            if (shard == null || shard.rowCount == shardRowCount) {
+                nextShard();
+            }
+            fileWriter.put(values.clone());
+            shard.rowCount++;
+            rowNumber++;
+        }
+
+        private void nextShard() {
+            boolean newFile = fileWriter == null || shardFiles;
+            int fileIndex = shard == null ? 1 : (newFile ? shard.fileIndex + 1 : shard.fileIndex);
+            int sheetIndex = newFile ? 1 : shard.sheetIndex + 1;
+            String sheetName = sheetIndex == 1 ? SHEET_NAME : SHEET_NAME + "-" + sheetIndex;
+            if (newFile) {
+                if (fileWriter != null) {
+                    // the full file is written while the next one receives rows
+                    fileWriter.put(END_OF_ROWS);
+                }
+                File tempFile = new File(summaryFile.getAbsoluteFile().getParentFile(),
+                        "." + summaryFile.getName() + "." + fileIndex + ".tmp");
+                fileWriter = new FileWriterTask(tempFile);
+                fileWriter.future = executor.submit(fileWriter);
+                fileWriters.add(fileWriter);
+            }
+            shard = new Shard(newFile ? fileWriter.file : null, fileIndex, sheetIndex, sheetName, rowNumber);
+            shards.add(shard);
+            fileWriter.put(new SheetStart(sheetName, titles.toArray()));
+        }
+
+        void finish() {
+            if (shard == null) {
+                nextShard();
+            }
+            fileWriter.put(END_OF_ROWS);
+            for (FileWriterTask writer : fileWriters) {
+                writer.awaitDone();
+            }
+        }
+    }
+
+    private static class SheetStart {
+        private final String sheetName;
+        private final Object[] titles;
+
+        SheetStart(String sheetName, Object[] titles) {
+            this.sheetName = sheetName;
+            this.titles = titles;
+        }
+    }
+
+    /**
+     * Builds one workbook from the queued rows on its own thread and writes it to file.
+     */
+    private class FileWriterTask implements Callable<Void> {
+        private final File file;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private Future<Void> future;
+
+        FileWriterTask(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            Workbook workbook = workbookFactory.get();
+            try {
+                SheetAgency sheetAgency = null;
+                Object item;
+                while ((item = queue.take()) != END_OF_ROWS) {
+                    if (item instanceof SheetStart) {
+                        SheetStart sheetStart = (SheetStart) item;
+                        sheetAgency = SheetAgency.of(workbook, sheetStart.sheetName);
+                        sheetAgency.write(sheetStart.titles)
+                                .newLine();
+                    } else {
+                        sheetAgency.write((Object[]) item)
+                                .newLine();
+                    }
+                }
+                try (OutputStream outputStream = new FileOutputStream(file)) {
+                    workbook.write(outputStream);
+                }
+                return null;
+            } finally {
+                if (workbook instanceof SXSSFWorkbook) {
+                    ((SXSSFWorkbook) workbook).dispose();
+                }
+            }
+        }
+
+        /**
+         * Queues an item, fails if the writer thread failed instead of waiting for it forever.
+         */
+        void put(Object item) {
+            try {
+                while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    if (future.isDone()) {
+                        awaitDone();
+                        throw new IllegalStateException("Writer of " + file.getName() + " stopped early.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted in writing " + file.getName(), e);
+            }
+        }
+
+        void awaitDone() {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted in writing " + file.getName(), e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed in writing " + file.getName(), e.getCause());
+            }
+        }
+    }
+
+    private static class Shard {
+        /** temp file of the workbook, null for further sheets of the same file */
+        private final File tempFile;
+        private final int fileIndex;
+        private final int sheetIndex;
+        private final String sheetName;
+        private final long firstRow;
+        private long rowCount;
+
+        Shard(File tempFile, int fileIndex, int sheetIndex, String sheetName, long firstRow) {
+            this.tempFile = tempFile;
+            this.fileIndex = fileIndex;
+            this.sheetIndex = sheetIndex;
+            this.sheetName = sheetName;
+            this.firstRow = firstRow;
+        }
+    }
+
+    /**
+     * One shard in the manifest, firstRow is the 1 based number of its first row among all merged rows.
+     */
+    @Getter
+    public static class ShardEntry {
+        private final String file;
+        private final String sheet;
+        private final long firstRow;
+        private final long rowCount;
+
+        ShardEntry(String file, String sheet, long firstRow, long rowCount) {
+            this.file = file;
+            this.sheet = sheet;
+            this.firstRow = firstRow;
+            this.rowCount = rowCount;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.balance.excel.merge;
+
+import java.io.File;
+
+/**
+ * Format of the merged summary file.
+ */
+public enum SummaryFormat {
+    XLSX,
+    CSV,
+    TSV;
+
+    /**
+     * Chooses the format by the extension of the file, a trailing .gz is ignored. Unknown extensions are xlsx.
+     */
+    public static SummaryFormat of(File file) {
+        String name = file.getName().toLowerCase();
+        if (isGzip(file)) {
+            name = name.substring(0, name.length() - ".gz".length());
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        return name.endsWith(".tsv") ? TSV : XLSX;
+    }
+
+    public static boolean isGzip(File file) {
+        return file.getName().toLowerCase().endsWith(".gz");
+    }
+}
@@ -97,6 +97,9 @@ public class CellProxy {
         cell.setCellValue(value);
     }
 
+    /**
+     * Scans all merged regions of the sheet, SheetAgency looks the size up in its MergedRegionIndex instead.
+     */
     public int getColumnSize() {
         for (CellRangeAddress range : cell.getSheet().getMergedRegions()) {
             if (range.containsColumn(cell.getColumnIndex()) && range.containsRow(cell.getRowIndex())) {
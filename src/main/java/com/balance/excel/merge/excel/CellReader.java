@@ -0,0 +1,11 @@
+package com.balance.excel.merge.excel;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Reads the value of a cell as one data type without changing the cell, see SheetAgency.columnReader.
+ */
+@FunctionalInterface
+public interface CellReader<T> {
+    T read(Cell cell);
+}
@@ -1,5 +1,6 @@
 package com.balance.excel.merge.excel;
 
+import com.balance.excel.merge.reader.WorkbookSource;
 import com.balance.excel.merge.util.MessageRecorder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -7,8 +8,11 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.util.StringUtils;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.TimeZone;
@@ -16,9 +20,14 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Loads and saves annotated data types on a workbook. A workbook opened by from(File) or from(Path) is
+ * closed by close, one passed in by the caller stays open.
+ */
 @Slf4j
-public class ExcelAssistant {
+public class ExcelAssistant implements Closeable {
     private Workbook workbook;
+    private boolean ownsWorkbook;
     private String datePattern;
     private TimeZone zone;
     private String numFormat;
@@ -69,6 +78,28 @@ public class ExcelAssistant {
         return new ExcelAssistant(xssfWorkbook);
     }
 
+    /**
+     * Opens the excel file read only without copying it to the heap.
+     * Data can be loaded from it, but the workbook can't be saved. Close the assistant to release the file.
+     */
+    public static ExcelAssistant from(File excelFile) {
+        Workbook workbook;
+        try {
+            workbook = WorkbookSource.of(excelFile).openReadOnly();
+        } catch (IOException e) {
+            String message = "Failed in reading excel file:" + excelFile.getAbsolutePath();
+            log.error(message, e);
+            return null;
+        }
+        ExcelAssistant assistant = new ExcelAssistant(workbook);
+        assistant.ownsWorkbook = true;
+        return assistant;
+    }
+
+    public static ExcelAssistant from(Path excelPath) {
+        return from(excelPath.toFile());
+    }
+
     public ExcelAssistant datePattern(String datePattern, TimeZone zone) {
         this.datePattern = datePattern;
         this.zone = zone;
@@ -86,6 +117,10 @@ public class ExcelAssistant {
 
     public <T> ExcelAssistant saveToSheet(Stream<T> datas, String sheetName, Class<T> dataType) {
         ExcelObjectDefinition<T> objectDefinition = ExcelObjectDefinition.from(dataType);
+        ExcelRowBinder<T> binder = objectDefinition.getBinder();
+        List<Function<T, Object>> getters = objectDefinition.getFields().stream()
+                .map(binder::getter)
+                .collect(Collectors.toList());
         List<String> titles = objectDefinition.getFields().stream()
                 .map(c -> c.getExcelTitle())
                 .collect(Collectors.toList());
@@ -98,11 +133,22 @@ public class ExcelAssistant {
         }
         sheetAgency.write(titles.toArray());
         datas.forEach(data ->{
-            List<Object> values = objectDefinition.getFields().stream()
-                    .map(c -> c.getAccessor().getValue(data))
-                    .collect(Collectors.toList());
-            sheetAgency.newLine().writeWithStyle(objectDefinition, values.toArray());
+            Object[] values = new Object[getters.size()];
+            for (int i = 0; data != null && i < values.length; i++) {
+                values[i] = getters.get(i).apply(data);
+            }
+            sheetAgency.newLine().writeWithStyle(objectDefinition, values);
         });
         return this;
     }
+
+    /**
+     * Closes the workbook if this assistant opened it from a file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownsWorkbook) {
+            workbook.close();
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.balance.excel.merge.excel;
 
 import com.balance.excel.merge.util.MessageRecorder;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -13,8 +14,14 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Getter
 @Setter
@@ -22,13 +29,82 @@ import java.util.Objects;
 @Builder
 @Slf4j
 public class ExcelObjectDefinition<T> {
+    private static final ClassValue<ExcelObjectDefinition<?>> DEFINITIONS = new ClassValue<ExcelObjectDefinition<?>>() {
+        @Override
+        protected ExcelObjectDefinition<?> computeValue(Class<?> dataType) {
+            return create(dataType);
+        }
+    };
+
     private Class<T> dataType;
     private List<ExcelColumnDefinition> fields;
     private ExeclValueAccessor otherValueAccessor;
     private Method postAction;
     private ExcelColumnDefinition keyField;
+    /**
+     * the generated mapper the definition comes from, null if it is read from the annotations by reflection
+     */
+    private ExcelRowMapper<T> rowMapper;
+    /**
+     * built from the fields on first use, dropped when the fields change
+     */
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<FieldIndex<T>> fieldIndex = new AtomicReference<>();
+
+    public void setDataType(Class<T> dataType) {
+        this.dataType = dataType;
+        fieldIndex.set(null);
+    }
+
+    public void setFields(List<ExcelColumnDefinition> fields) {
+        this.fields = fields;
+        fieldIndex.set(null);
+    }
+
+    public void setRowMapper(ExcelRowMapper<T> rowMapper) {
+        this.rowMapper = rowMapper;
+        fieldIndex.set(null);
+    }
+
+    /**
+     * @return the fields by their excel title, the last one of fields with the same title
+     */
+    public Map<String, ExcelColumnDefinition> getFieldsByTitle() {
+        return index().fieldsByTitle;
+    }
+
+    /**
+     * @return the titles of the required fields in the order of fields
+     */
+    public Set<String> getRequiredTitles() {
+        return index().requiredTitles;
+    }
+
+    public ExcelRowBinder<T> getBinder() {
+        return index().binder;
+    }
+
+    private FieldIndex<T> index() {
+        FieldIndex<T> index = fieldIndex.get();
+        if (index == null) {
+            fieldIndex.compareAndSet(null, new FieldIndex<>(this));
+            index = fieldIndex.get();
+        }
+        return index;
+    }
 
     public void runPostAction(ExcelRowWrapper<T> wrapper, MessageRecorder messageRecorder) {
+        if (rowMapper != null) {
+            try {
+                rowMapper.runPostAction(wrapper, messageRecorder);
+            } catch (RuntimeException e) {
+                messageRecorder.appendError("Failed to run post action of {0} for object {1}, Error is :{2}",
+                        dataType, wrapper.getData(), e.getMessage());
+                log.error(MessageFormat.format("Failed to run post action of {0} for object {1}, Error is :{2}",
+                        dataType, wrapper.getData(), e.getMessage()), e);
+            }
+            return;
+        }
         if (postAction == null) {
             return;
         }
@@ -53,7 +129,42 @@ public class ExcelObjectDefinition<T> {
         }
     }
 
+    /**
+     * The definition of dataType is made once and shared by all callers, it should not be changed.
+     */
+    @SuppressWarnings("unchecked")
     public static <T> ExcelObjectDefinition<T> from(Class<T> dataType) {
+        return (ExcelObjectDefinition<T>) DEFINITIONS.get(dataType);
+    }
+
+    /**
+     * Uses the mapper generated for dataType at build time if there is one, otherwise reads the annotations.
+     */
+    private static <T> ExcelObjectDefinition<T> create(Class<T> dataType) {
+        ExcelRowMapper<T> rowMapper = findRowMapper(dataType);
+        return rowMapper != null ? rowMapper.getDefinition() : fromAnnotations(dataType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ExcelRowMapper<T> findRowMapper(Class<T> dataType) {
+        if (dataType.getClassLoader() == null) {
+            return null;
+        }
+        try {
+            Class<?> mapperClass = Class.forName(ExcelRowMapper.mapperName(dataType.getName()), true, dataType.getClassLoader());
+            return ExcelRowMapper.class.isAssignableFrom(mapperClass) ? (ExcelRowMapper<T>) mapperClass.newInstance() : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (InstantiationException | IllegalAccessException | LinkageError e) {
+            log.warn("Failed to load the generated mapper of " + dataType + ", read its annotations instead.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the definition from the annotations of dataType by reflection.
+     */
+    public static <T> ExcelObjectDefinition<T> fromAnnotations(Class<T> dataType) {
         ExeclValueAccessor otherValueAccessor = null;
         List<ExcelColumnDefinition> fields = new ArrayList<>();
         ExcelColumnDefinition keyField = null;
@@ -154,6 +265,26 @@ public class ExcelObjectDefinition<T> {
         return postAction;
     }
 
+    private static class FieldIndex<T> {
+        private final Map<String, ExcelColumnDefinition> fieldsByTitle;
+        private final Set<String> requiredTitles;
+        private final ExcelRowBinder<T> binder;
+
+        FieldIndex(ExcelObjectDefinition<T> objectDefinition) {
+            Map<String, ExcelColumnDefinition> fieldsByTitle = new HashMap<>();
+            Set<String> requiredTitles = new LinkedHashSet<>();
+            for (ExcelColumnDefinition columnDefinition : objectDefinition.getFields()) {
+                fieldsByTitle.put(columnDefinition.getExcelTitle(), columnDefinition);
+                if (columnDefinition.isRequired()) {
+                    requiredTitles.add(columnDefinition.getExcelTitle());
+                }
+            }
+            this.fieldsByTitle = Collections.unmodifiableMap(fieldsByTitle);
+            this.requiredTitles = Collections.unmodifiableSet(requiredTitles);
+            this.binder = ExcelRowBinder.of(objectDefinition);
+        }
+    }
+
     @Override
     public String toString() {
         return "{" +
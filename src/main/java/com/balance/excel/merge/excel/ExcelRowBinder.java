@@ -0,0 +1,177 @@
+package com.balance.excel.merge.excel;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The constructor, setters and getters of an ExcelObjectDefinition compiled once into lambdas with
+ * LambdaMetafactory, so loading or writing a row makes plain interface calls instead of reflective ones.
+ * Members a generated lambda can't reach, e.g. of a class which is not public, are bound by method handles.
+ * A definition of a generated ExcelRowMapper is bound through the mapper instead.
+ */
+@Slf4j
+public class ExcelRowBinder<T> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Supplier<T> constructor;
+    private final Map<ExcelColumnDefinition, BiConsumer<T, Object>> setters = new IdentityHashMap<>();
+    private final Map<ExcelColumnDefinition, Function<T, Object>> getters = new IdentityHashMap<>();
+
+    private ExcelRowBinder(Supplier<T> constructor) {
+        this.constructor = constructor;
+    }
+
+    /**
+     * Binds through the generated mapper of the definition if it has one, otherwise compiles its accessors.
+     */
+    public static <T> ExcelRowBinder<T> of(ExcelObjectDefinition<T> objectDefinition) {
+        ExcelRowMapper<T> rowMapper = objectDefinition.getRowMapper();
+        if (rowMapper == null) {
+            return compile(objectDefinition);
+        }
+        ExcelRowBinder<T> binder = new ExcelRowBinder<>(rowMapper::newInstance);
+        List<ExcelColumnDefinition> fields = objectDefinition.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            int fieldIndex = i;
+            binder.setters.put(fields.get(i), (data, value) -> rowMapper.setValue(data, fieldIndex, value));
+            binder.getters.put(fields.get(i), data -> rowMapper.getValue(data, fieldIndex));
+        }
+        return binder;
+    }
+
+    public static <T> ExcelRowBinder<T> compile(ExcelObjectDefinition<T> objectDefinition) {
+        Class<T> dataType = objectDefinition.getDataType();
+        ExcelRowBinder<T> binder = new ExcelRowBinder<>(compileConstructor(dataType));
+        for (ExcelColumnDefinition columnDefinition : objectDefinition.getFields()) {
+            ExeclValueAccessor accessor = columnDefinition.getAccessor();
+            if (accessor.getSetMethod() != null) {
+                binder.setters.put(columnDefinition, compileSetter(dataType, accessor.getSetMethod()));
+            }
+            if (accessor.getGetMethod() != null) {
+                binder.getters.put(columnDefinition, compileGetter(dataType, accessor.getGetMethod()));
+            }
+        }
+        return binder;
+    }
+
+    public T newInstance() {
+        return constructor.get();
+    }
+
+    /**
+     * @return the setter of the column, null if the column has no setter
+     */
+    public BiConsumer<T, Object> setter(ExcelColumnDefinition columnDefinition) {
+        return setters.get(columnDefinition);
+    }
+
+    /**
+     * @return the getter of the column, null if the column has no getter
+     */
+    public Function<T, Object> getter(ExcelColumnDefinition columnDefinition) {
+        return getters.get(columnDefinition);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> compileConstructor(Class<T> dataType) {
+        MethodHandle constructor;
+        try {
+            constructor = LOOKUP.findConstructor(dataType, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return () -> {
+                throw new IllegalStateException("No accessible constructor without parameters in " + dataType, e);
+            };
+        }
+        try {
+            return (Supplier<T>) metafactory(Supplier.class, "get", MethodType.methodType(Object.class),
+                    constructor, MethodType.methodType(dataType));
+        } catch (Throwable e) {
+            log.debug("Bind constructor of {} by method handle.", dataType, e);
+            MethodHandle genericConstructor = constructor.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (T) genericConstructor.invokeExact();
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Failed to create instance of " + dataType, t);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> BiConsumer<T, Object> compileSetter(Class<T> dataType, Method setMethod) {
+        MethodHandle setter = unreflect(setMethod);
+        Class<?> valueType = MethodType.methodType(setMethod.getParameterTypes()[0]).wrap().returnType();
+        try {
+            return (BiConsumer<T, Object>) metafactory(BiConsumer.class, "accept",
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    setter, MethodType.methodType(void.class, dataType, valueType));
+        } catch (Throwable e) {
+            log.debug("Bind setter {} by method handle.", setMethod, e);
+            MethodHandle genericSetter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (data, value) -> {
+                try {
+                    genericSetter.invokeExact(data, value);
+                } catch (RuntimeException | Error t) {
+                    throw t;
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Failed to call " + setMethod, t);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Function<T, Object> compileGetter(Class<T> dataType, Method getMethod) {
+        MethodHandle getter = unreflect(getMethod);
+        try {
+            return (Function<T, Object>) metafactory(Function.class, "apply",
+                    MethodType.methodType(Object.class, Object.class),
+                    getter, MethodType.methodType(getMethod.getReturnType(), dataType).wrap());
+        } catch (Throwable e) {
+            log.debug("Bind getter {} by method handle.", getMethod, e);
+            MethodHandle genericGetter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            return data -> {
+                try {
+                    return genericGetter.invokeExact(data);
+                } catch (RuntimeException | Error t) {
+                    throw t;
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Failed to call " + getMethod, t);
+                }
+            };
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            method.setAccessible(true);
+            try {
+                return LOOKUP.unreflect(method);
+            } catch (IllegalAccessException accessException) {
+                throw new IllegalStateException("Can't access " + method, accessException);
+            }
+        }
+    }
+
+    private static Object metafactory(Class<?> interfaceType, String methodName, MethodType erasedType,
+                                      MethodHandle target, MethodType instantiatedType) throws Throwable {
+        CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, methodName, MethodType.methodType(interfaceType),
+                erasedType, target, instantiatedType);
+        return callSite.getTarget().invoke();
+    }
+}
@@ -1,6 +1,5 @@
 package com.balance.excel.merge.excel;
 
-import com.balance.excel.merge.util.MapUtils;
 import com.balance.excel.merge.util.MessageRecorder;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -9,8 +8,8 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.springframework.util.StringUtils;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -18,6 +17,7 @@ import java.util.stream.StreamSupport;
 public class ExcelRowIterator<T> implements Iterator<ExcelRowWrapper<T>> {
     protected final SheetAgency sheetAgency;
     private ExcelObjectDefinition<T> objectDefinition;
+    private final ExcelRowBinder<T> binder;
     private int keyFieldIndex = -1;
 
     protected List<FieldInfo> modelInformation = new ArrayList();
@@ -29,6 +29,7 @@ public class ExcelRowIterator<T> implements Iterator<ExcelRowWrapper<T>> {
     public ExcelRowIterator(Sheet sheet, ExcelObjectDefinition<T> objectDefinition, MessageRecorder messageRecorder) {
         this.sheetAgency = SheetAgency.of(sheet);
         this.objectDefinition = objectDefinition;
+        this.binder = objectDefinition.getBinder();
         this.messageRecorder = messageRecorder;
     }
 
@@ -36,11 +37,12 @@ public class ExcelRowIterator<T> implements Iterator<ExcelRowWrapper<T>> {
         currentRow = loadSchema(rowIndex, startColumn, endColumn);
     }
     public int loadSchema(int rowIndex, int startColumn, int endColumn){
-        Map<String, ExcelColumnDefinition> fieldMap = MapUtils.listToMap(objectDefinition.getFields(), ExcelColumnDefinition::getExcelTitle);
+        Map<String, ExcelColumnDefinition> fieldMap = objectDefinition.getFieldsByTitle();
+        CellReader<String> titleReader = SheetAgency.columnReader(String.class);
 
         for (int index = startColumn; index < endColumn ; ++index) {
 
-            String columnValue = sheetAgency.readCellValue(rowIndex, index, String.class);
+            String columnValue = sheetAgency.readCellValue(rowIndex, index, titleReader);
             if (!StringUtils.hasText(columnValue)) {
                 break;
             }
@@ -49,7 +51,8 @@ public class ExcelRowIterator<T> implements Iterator<ExcelRowWrapper<T>> {
                 continue;
             }
 
-            FieldInfo fieldInfo = new FieldInfo(index, columnDefinition);
+            FieldInfo fieldInfo = new FieldInfo(index, columnDefinition, binder.setter(columnDefinition),
+                    SheetAgency.columnReader(columnDefinition.getAccessor().getDataType()));
             // The Key field must at the first.Then it can be checked first when load data
             if (Objects.equals(columnDefinition, objectDefinition.getKeyField())) {
                 keyFieldIndex = index;
@@ -74,13 +77,15 @@ public class ExcelRowIterator<T> implements Iterator<ExcelRowWrapper<T>> {
     }
 
     private void checkAllNotNullFieldMustExist(ExcelObjectDefinition<T> objectDefinition, List<FieldInfo> modelInformation) {
-        Map<String, FieldInfo> fieldInfoMap = MapUtils.listToMap(modelInformation,
-                f -> f.getColumnDefinition().getExcelTitle());
+        Set<String> loadedTitles = new HashSet<>();
+        for (FieldInfo fieldInfo : modelInformation) {
+            loadedTitles.add(fieldInfo.getColumnDefinition().getExcelTitle());
+        }
 
         List<String> lostRequiredField = new ArrayList<>();
-        for (ExcelColumnDefinition columnDefinition : objectDefinition.getFields()) {
-            if (columnDefinition.isRequired() && !fieldInfoMap.containsKey(columnDefinition.getExcelTitle())) {
-                lostRequiredField.add(columnDefinition.getExcelTitle());
+        for (String requiredTitle : objectDefinition.getRequiredTitles()) {
+            if (!loadedTitles.contains(requiredTitle)) {
+                lostRequiredField.add(requiredTitle);
             }
         }
         if (!lostRequiredField.isEmpty()) {
@@ -112,37 +117,37 @@ public class ExcelRowIterator<T> implements Iterator<ExcelRowWrapper<T>> {
         if (modelInformation.isEmpty() || keyFieldIndex < 0) {
             return null;
         }
+        T data;
         try {
-            T data = objectDefinition.getDataType().newInstance();
-            ExcelRowWrapper<T> wrapper = new ExcelRowWrapper<T>(data, sheetAgency.getSheet().getSheetName(), currentRow + 1);
-            for (FieldInfo fieldInfo : modelInformation) {
-                Object value = sheetAgency.readCellValue(currentRow, fieldInfo.columnIndex,
-                        fieldInfo.getColumnDefinition().getAccessor().getDataType());
-
-                boolean isEmptyValue = ExcelValueValidator.isEmptyValue(value);
-                if (fieldInfo.columnIndex == keyFieldIndex && isEmptyValue) {
-                    return null;
-                }
+            data = binder.newInstance();
+        } catch (RuntimeException e) {
+            log.error("Failed to create instance " + objectDefinition.getDataType(), e);
+            return null;
+        }
+        ExcelRowWrapper<T> wrapper = new ExcelRowWrapper<T>(data, sheetAgency.getSheet().getSheetName(), currentRow + 1);
+        for (FieldInfo fieldInfo : modelInformation) {
+            Object value = sheetAgency.readCellValue(currentRow, fieldInfo.columnIndex, fieldInfo.cellReader);
 
-                if (fieldInfo.columnDefinition.getValidator() != null) {
-                    fieldInfo.columnDefinition.getValidator().validate(value, fieldInfo.columnDefinition, wrapper, messageRecorder);
-                }
+            boolean isEmptyValue = ExcelValueValidator.isEmptyValue(value);
+            if (fieldInfo.columnIndex == keyFieldIndex && isEmptyValue) {
+                return null;
+            }
 
-                if (!isEmptyValue) {
-                    try {
-                        fieldInfo.columnDefinition.getAccessor().getSetMethod().invoke(data, value);
-                    } catch (IllegalAccessException | InvocationTargetException e) {
-                        log.error("Failed to write field:" + fieldInfo.columnDefinition.getAccessor().getFieldName(), e);
-                    }
-                }
+            if (fieldInfo.columnDefinition.getValidator() != null) {
+                fieldInfo.columnDefinition.getValidator().validate(value, fieldInfo.columnDefinition, wrapper, messageRecorder);
             }
 
-            objectDefinition.runPostAction(wrapper, messageRecorder);
-            return wrapper;
-        } catch (InstantiationException | IllegalAccessException e) {
-            log.error("Failed to create instance " + objectDefinition.getDataType(), e);
+            if (!isEmptyValue) {
+                try {
+                    fieldInfo.setter.accept(data, value);
+                } catch (RuntimeException e) {
+                    log.error("Failed to write field:" + fieldInfo.columnDefinition.getAccessor().getFieldName(), e);
+                }
+            }
         }
-        return null;
+
+        objectDefinition.runPostAction(wrapper, messageRecorder);
+        return wrapper;
     }
 
     public Stream<ExcelRowWrapper<T>> stream() {
@@ -169,8 +174,10 @@ public class ExcelRowIterator<T> implements Iterator<ExcelRowWrapper<T>> {
 
     @Getter
     @AllArgsConstructor
-    private static class FieldInfo {
+    private class FieldInfo {
         private int columnIndex;
         private ExcelColumnDefinition columnDefinition;
+        private BiConsumer<T, Object> setter;
+        private CellReader<?> cellReader;
     }
 }
@@ -0,0 +1,41 @@
+package com.balance.excel.merge.excel;
+
+import com.balance.excel.merge.util.MessageRecorder;
+
+/**
+ * Maps rows to a data type without reflection. Implementations are generated at build time by
+ * ExcelMapperProcessor as &lt;DataType&gt;ExcelMapper next to the data type, and picked up by
+ * ExcelObjectDefinition.from when they exist.
+ */
+public interface ExcelRowMapper<T> {
+    String MAPPER_SUFFIX = "ExcelMapper";
+
+    /**
+     * @return the definition of the data type, built from the annotations seen at build time
+     */
+    ExcelObjectDefinition<T> getDefinition();
+
+    T newInstance();
+
+    /**
+     * @param fieldIndex index of the field in getDefinition().getFields()
+     */
+    void setValue(T data, int fieldIndex, Object value);
+
+    /**
+     * @param fieldIndex index of the field in getDefinition().getFields()
+     */
+    Object getValue(T data, int fieldIndex);
+
+    /**
+     * Calls the ExcelPostAction method of the data, if there is one.
+     */
+    void runPostAction(ExcelRowWrapper<T> wrapper, MessageRecorder messageRecorder);
+
+    /**
+     * @return the class name of the generated mapper of dataType, e.g. a.b.Outer_InnerExcelMapper for a.b.Outer$Inner
+     */
+    static String mapperName(String dataTypeBinaryName) {
+        return dataTypeBinaryName.replace('$', '_') + MAPPER_SUFFIX;
+    }
+}
@@ -39,6 +39,27 @@ public class ExeclValueAccessor {
         }
     }
 
+    /**
+     * Looks up the getter and setter by name, for the definitions generated by ExcelMapperProcessor.
+     * Methods declared by super classes are found as well.
+     */
+    public static ExeclValueAccessor from(Class<?> declaringType, String fieldName, Class dataType,
+                                          String getMethodName, String setMethodName) {
+        return new ExeclValueAccessor(fieldName, dataType,
+                findMethod(declaringType, getMethodName, 0), findMethod(declaringType, setMethodName, 1));
+    }
+
+    private static Method findMethod(Class<?> declaringType, String methodName, int parameterCount) {
+        for (Class<?> type = declaringType; type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.getName().equals(methodName) && method.getParameterCount() == parameterCount && !method.isBridge()) {
+                    return method;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Can't find method:" + methodName + " in " + declaringType);
+    }
+
     public Object getValue(Object data) {
         if (data == null) {
             return null;
@@ -0,0 +1,77 @@
+package com.balance.excel.merge.excel;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The merged regions of a sheet by row and first column, so the region of a cell is found without scanning
+ * all regions. It is read from the sheet on first use and then kept up to date by add, regions merged on the
+ * sheet directly afterwards are not seen.
+ * Merged regions don't overlap, so at most one region of a row starts at or before a column and contains it.
+ */
+class MergedRegionIndex {
+    /**
+     * regions of more rows are kept in a list instead of under every row they span
+     */
+    private static final int MAX_INDEXED_ROWS = 256;
+
+    private final Sheet sheet;
+    private Map<Integer, TreeMap<Integer, CellRangeAddress>> rowRegions;
+    private List<CellRangeAddress> tallRegions;
+
+    MergedRegionIndex(Sheet sheet) {
+        this.sheet = sheet;
+    }
+
+    void add(CellRangeAddress region) {
+        if (rowRegions != null) {
+            put(region);
+        }
+    }
+
+    /**
+     * @return the number of columns of the merged region at the cell, 1 if the cell is not merged
+     */
+    int columnSize(int row, int column) {
+        if (rowRegions == null) {
+            rowRegions = new HashMap<>();
+            tallRegions = new ArrayList<>();
+            for (CellRangeAddress region : sheet.getMergedRegions()) {
+                put(region);
+            }
+        }
+        TreeMap<Integer, CellRangeAddress> regions = rowRegions.get(row);
+        if (regions != null) {
+            Map.Entry<Integer, CellRangeAddress> entry = regions.floorEntry(column);
+            if (entry != null && entry.getValue().getLastColumn() >= column) {
+                return columnSize(entry.getValue());
+            }
+        }
+        for (CellRangeAddress region : tallRegions) {
+            if (region.containsRow(row) && region.containsColumn(column)) {
+                return columnSize(region);
+            }
+        }
+        return 1;
+    }
+
+    private void put(CellRangeAddress region) {
+        if (region.getLastRow() - region.getFirstRow() >= MAX_INDEXED_ROWS) {
+            tallRegions.add(region);
+            return;
+        }
+        for (int row = region.getFirstRow(); row <= region.getLastRow(); row++) {
+            rowRegions.computeIfAbsent(row, r -> new TreeMap<>()).put(region.getFirstColumn(), region);
+        }
+    }
+
+    private static int columnSize(CellRangeAddress region) {
+        return region.getLastColumn() - region.getFirstColumn() + 1;
+    }
+}
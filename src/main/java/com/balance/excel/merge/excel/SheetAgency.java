@@ -1,40 +1,45 @@
 package com.balance.excel.merge.excel;
 
 import com.balance.excel.merge.util.MapBuilder;
+import com.balance.excel.merge.util.convert.primitive.IPrimitiveConverter;
 import com.balance.excel.merge.util.convert.primitive.PrimitiveConverter;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.springframework.util.StringUtils;
 
+import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.DoubleFunction;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class SheetAgency {
-    private static final Function<Cell, Object> NULLABLE_NUMBER_READER_FUNCTION = c -> {
-        if (CellType.BLANK.equals(c.getCellTypeEnum())) {
-            return null;
-        }
-        return c.getNumericCellValue();
-    };
-
-    private static final Map<Class, Function<Cell, Object>> CellReaderMap = MapBuilder
-            .<Class, Function<Cell, Object>>of(String.class, (c) -> {
-                c.setCellType(CellType.STRING);
-                return c.getStringCellValue().trim();
-            })
-            .and(double.class, c -> c.getNumericCellValue())
-            .and(Double.class, NULLABLE_NUMBER_READER_FUNCTION)
-            .and(Integer.class, c -> (int) c.getNumericCellValue())
-            .and(Long.class, c -> (long) c.getNumericCellValue())
-            .and(Date.class, c -> c.getDateCellValue())
+    /**
+     * Reads a cell as text the way setCellType(CellType.STRING) converts it, without changing the cell.
+     */
+    public static final CellReader<String> TEXT_READER = SheetAgency::cellText;
+
+    private static final Map<Class, CellReader<?>> CellReaderMap = MapBuilder
+            .<Class, CellReader<?>>of(String.class, (CellReader<String>) c -> cellText(c).trim())
+            .and(double.class, numberReader(v -> v, Double.class, 0d))
+            .and(Double.class, numberReader(v -> v, Double.class, null))
+            .and(int.class, numberReader(v -> (int) v, Integer.class, 0))
+            .and(Integer.class, numberReader(v -> (int) v, Integer.class, null))
+            .and(long.class, numberReader(v -> (long) v, Long.class, 0L))
+            .and(Long.class, numberReader(v -> (long) v, Long.class, null))
+            .and(boolean.class, booleanReader(false))
+            .and(Boolean.class, booleanReader(null))
+            .and(Date.class, dateReader())
             .build();
 
     private final Sheet sheet;
+    private final MergedRegionIndex mergedRegions;
     private SimpleDateFormat dateFormat;
     private CellStyle defaultDateCellStyle;
 
@@ -47,12 +52,20 @@ public class SheetAgency {
 
     public SheetAgency(Sheet sheet) {
         this.sheet = sheet;
+        this.mergedRegions = new MergedRegionIndex(sheet);
     }
 
     public Sheet getSheet() {
         return sheet;
     }
 
+    /**
+     * A streaming sheet only keeps a window of rows in memory, rows before the window can't be read or rewritten.
+     */
+    public boolean isStreaming() {
+        return sheet instanceof SXSSFSheet;
+    }
+
     public SheetAgency datePattern(String datePattern, TimeZone zone) {
         dateFormat = new SimpleDateFormat(datePattern);
         if (zone != null) {
@@ -133,7 +146,7 @@ public class SheetAgency {
                 }
             }
 
-            column += cellProxy.getColumnSize();
+            column += mergedRegions.columnSize(row, column);
         }
         return this;
     }
@@ -180,12 +193,22 @@ public class SheetAgency {
                 }
             }
 
-            column += cellProxy.getColumnSize();
+            column += mergedRegions.columnSize(row, column);
         }
         return this;
     }
 
     public <T> T readCellValue(int rowIndex, int columnIndex, Class<T> dataType) {
+        return readCellValue(rowIndex, columnIndex, columnReader(dataType));
+    }
+
+    /**
+     * @param reader the reader of the column, resolved once by columnReader
+     */
+    public <T> T readCellValue(int rowIndex, int columnIndex, CellReader<T> reader) {
+        if (isStreaming()) {
+            throw new UnsupportedOperationException("Can't read cell value from streaming sheet:" + sheet.getSheetName());
+        }
         Row row = sheet.getRow(rowIndex);
         if (row == null) {
             return null;
@@ -195,21 +218,102 @@ public class SheetAgency {
             return null;
         }
 
-        Function<Cell, Object> reader = CellReaderMap.get(dataType);
-        if (reader != null) {
-            try {
-                return (T) reader.apply(cell);
-            } catch (Exception e) {
-                log.error("Failed to read cell value at row:{}, column:{}, dataType:{}.",
-                        rowIndex, columnIndex, dataType);
-                throw e;
+        try {
+            return reader.read(cell);
+        } catch (RuntimeException e) {
+            log.error("Failed to read cell value at row:{}, column:{}.", rowIndex, columnIndex);
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves how the cells of a column of dataType are read. Numeric, date and boolean cells are read as such,
+     * a blank cell is null, or the default value of a primitive type, and any other cell is converted from its
+     * trimmed text by PrimitiveConverter.
+     * String columns get the trimmed text of every cell.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CellReader<T> columnReader(Class<T> dataType) {
+        CellReader<?> reader = CellReaderMap.get(dataType);
+        return reader != null ? (CellReader<T>) reader : converterReader(dataType);
+    }
+
+    /**
+     * @return the text of the cell as setCellType(CellType.STRING) would make it
+     */
+    public static String cellText(Cell cell) {
+        switch (resultType(cell)) {
+            case STRING:
+                return cell.getStringCellValue();
+            case NUMERIC:
+                return cell instanceof XSSFCell
+                        ? ((XSSFCell) cell).getRawValue()
+                        : NumberToTextConverter.toText(cell.getNumericCellValue());
+            case BOOLEAN:
+                return cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+            case ERROR:
+                return cell instanceof XSSFCell
+                        ? ((XSSFCell) cell).getRawValue()
+                        : FormulaError.forInt(cell.getErrorCellValue()).getString();
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * @return the type of the cell, or of the cached result of a formula cell
+     */
+    private static CellType resultType(Cell cell) {
+        CellType cellType = cell.getCellTypeEnum();
+        return cellType == CellType.FORMULA ? cell.getCachedFormulaResultTypeEnum() : cellType;
+    }
+
+    /**
+     * @param blankValue value of a blank cell, the default value for a primitive type so it reads as 0 like before
+     */
+    private static <T> CellReader<T> numberReader(DoubleFunction<T> fromNumber, Class<T> dataType, T blankValue) {
+        CellReader<T> textReader = converterReader(dataType);
+        return c -> {
+            CellType cellType = resultType(c);
+            if (cellType == CellType.NUMERIC) {
+                return fromNumber.apply(c.getNumericCellValue());
             }
+            return cellType == CellType.BLANK ? blankValue : textReader.read(c);
+        };
+    }
+
+    private static CellReader<Boolean> booleanReader(Boolean blankValue) {
+        CellReader<Boolean> textReader = converterReader(Boolean.class);
+        return c -> {
+            CellType cellType = resultType(c);
+            if (cellType == CellType.BOOLEAN) {
+                return c.getBooleanCellValue();
+            }
+            return cellType == CellType.BLANK ? blankValue : textReader.read(c);
+        };
+    }
+
+    private static CellReader<Date> dateReader() {
+        CellReader<Date> textReader = converterReader(Date.class);
+        return c -> {
+            CellType cellType = resultType(c);
+            if (cellType == CellType.NUMERIC) {
+                return c.getDateCellValue();
+            }
+            return cellType == CellType.BLANK ? null : textReader.read(c);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CellReader<T> converterReader(Class<T> dataType) {
+        IPrimitiveConverter<T> converter = PrimitiveConverter.getInstance().findConverter(dataType);
+        if (converter == null) {
+            // fails with the message of PrimitiveConverter when a cell is read
+            return c -> PrimitiveConverter.getInstance().convert(cellText(c).trim(), dataType);
         }
-        cell.setCellType(CellType.STRING);
-        String strValue = cell.getStringCellValue().trim();
-        Object newValue = PrimitiveConverter.getInstance().convert(strValue, dataType);
-        return (T) newValue;
+        return c -> converter.convertFromString(cellText(c).trim());
     }
+
     public String readCellValue(int rowIndex, int columnIndex) {
         return readCellValue(rowIndex, columnIndex, String.class);
     }
@@ -218,6 +322,11 @@ public class SheetAgency {
         if (row < 0 || column < 0) {
             throw new IllegalArgumentException("Row and Column in excel can not small then 0.");
         }
+        if (isStreaming() && row <= ((SXSSFSheet) sheet).getLastFlushedRowNum()) {
+            throw new UnsupportedOperationException(MessageFormat.format(
+                    "Can''t locate row {0} of streaming sheet {1}, rows until {2} are flushed to disk already.",
+                    row, sheet.getSheetName(), ((SXSSFSheet) sheet).getLastFlushedRowNum()));
+        }
         this.row = row;
         this.column = column;
         return this;
@@ -242,16 +351,19 @@ public class SheetAgency {
 
     public SheetAgency mergeCell(int rowSize, int columnSize) {
         if (columnSize > 1 || rowSize > 1) {
-            sheet.addMergedRegion(new CellRangeAddress(row, row + rowSize - 1,
-                    column, column + columnSize - 1));
+            CellRangeAddress region = new CellRangeAddress(row, row + rowSize - 1,
+                    column, column + columnSize - 1);
+            sheet.addMergedRegion(region);
+            mergedRegions.add(region);
         }
 
         return this;
     }
 
     public SheetAgency nextColumn() {
-        CellProxy cellProxy = CellProxy.of(sheet, row, column);
-        column += cellProxy.getColumnSize();
+        // creates the skipped cell if it doesn't exist, so the skipped column gets an empty cell as before
+        CellProxy.of(sheet, row, column);
+        column += mergedRegions.columnSize(row, column);
         return this;
     }
 
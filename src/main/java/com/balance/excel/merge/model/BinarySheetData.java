@@ -0,0 +1,330 @@
+package com.balance.excel.merge.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * ExcelSheetData in a compact binary block, read in place from a ByteBuffer, e.g. a mapped file.
+ * <pre>
+ * header     magic, block length, column count, row count, string count and the offsets of the sections
+ * strings    int offset of every string followed by the UTF-8 bytes of all distinct values and titles
+ * columns    string id of the name of every column
+ * rows       int offset of every row followed by the rows, a varint of string id + 1 per column, 0 if no value
+ * </pre>
+ * All ints are big endian and all offsets are relative to the start of the block.
+ */
+public class BinarySheetData implements RowSource {
+    private static final int MAGIC = 0x58534431;
+    private static final int HEADER_SIZE = 40;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    private final int columnCount;
+    private final int rowCount;
+    private final int stringOffsetsPosition;
+    private final int columnsPosition;
+    private final int rowOffsetsPosition;
+    private final String[] strings;
+    private List<String> columnNames;
+
+    private BinarySheetData(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) > buffer.remaining()) {
+            throw new IOException("Not a sheet data block.");
+        }
+        columnCount = buffer.getInt(8);
+        rowCount = buffer.getInt(12);
+        strings = new String[buffer.getInt(16)];
+        stringOffsetsPosition = buffer.getInt(20);
+        columnsPosition = buffer.getInt(28);
+        rowOffsetsPosition = buffer.getInt(32);
+    }
+
+    /**
+     * Views the block at the position of buffer, the buffer is not copied.
+     */
+    public static BinarySheetData wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer block = buffer.slice();
+        BinarySheetData data = new BinarySheetData(block);
+        block.limit(block.getInt(4));
+        return data;
+    }
+
+    /**
+     * Maps a file written by write(ExcelSheetData, File). The file can be at most 2 GB.
+     */
+    public static BinarySheetData map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Sheet data file is too large to map: " + file.getAbsolutePath());
+            }
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return the number of bytes of the block
+     */
+    public int getLength() {
+        return buffer.getInt(4);
+    }
+
+    /**
+     * Reads the next block of the stream into memory.
+     */
+    public static BinarySheetData read(DataInputStream input) throws IOException {
+        int magic = input.readInt();
+        int length = input.readInt();
+        if (magic != MAGIC || length < HEADER_SIZE) {
+            throw new IOException("Not a sheet data block.");
+        }
+        byte[] block = new byte[length];
+        ByteBuffer.wrap(block).putInt(magic).putInt(length);
+        input.readFully(block, 8, length - 8);
+        return new BinarySheetData(ByteBuffer.wrap(block));
+    }
+
+    public static void write(ExcelSheetData data, File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+            write(data, output);
+        }
+    }
+
+    public static void write(ExcelSheetData data, DataOutputStream output) throws IOException {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> stringBytes = new ArrayList<>();
+        List<String> names = data.getColumnNames();
+        int[] nameIds = new int[names.size()];
+        for (int column = 0; column < nameIds.length; column++) {
+            nameIds[column] = stringId(names.get(column), stringIds, stringBytes);
+        }
+
+        int rowCount = data.getRowCount();
+        int[] rowOffsets = new int[rowCount + 1];
+        VarintBuffer rows = new VarintBuffer();
+        for (int row = 0; row < rowCount; row++) {
+            rowOffsets[row] = rows.size();
+            for (int column = 0; column < nameIds.length; column++) {
+                String value = data.getValue(row, column);
+                rows.writeVarint(value == null ? 0 : stringId(value, stringIds, stringBytes) + 1);
+            }
+        }
+        rowOffsets[rowCount] = rows.size();
+
+        int stringOffsetsPosition = HEADER_SIZE;
+        int stringDataPosition = stringOffsetsPosition + (stringBytes.size() + 1) * 4;
+        int stringDataSize = 0;
+        for (byte[] bytes : stringBytes) {
+            stringDataSize += bytes.length;
+        }
+        int columnsPosition = stringDataPosition + stringDataSize;
+        int rowOffsetsPosition = columnsPosition + nameIds.length * 4;
+        int rowsPosition = rowOffsetsPosition + (rowCount + 1) * 4;
+        long length = (long) rowsPosition + rows.size();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Sheet data is too large for one block: " + length + " bytes.");
+        }
+
+        output.writeInt(MAGIC);
+        output.writeInt((int) length);
+        output.writeInt(nameIds.length);
+        output.writeInt(rowCount);
+        output.writeInt(stringBytes.size());
+        output.writeInt(stringOffsetsPosition);
+        output.writeInt(stringDataPosition);
+        output.writeInt(columnsPosition);
+        output.writeInt(rowOffsetsPosition);
+        output.writeInt(rowsPosition);
+
+        int stringOffset = stringDataPosition;
+        for (byte[] bytes : stringBytes) {
+            output.writeInt(stringOffset);
+            stringOffset += bytes.length;
+        }
+        output.writeInt(stringOffset);
+        for (byte[] bytes : stringBytes) {
+            output.write(bytes);
+        }
+        for (int nameId : nameIds) {
+            output.writeInt(nameId);
+        }
+        for (int rowOffset : rowOffsets) {
+            output.writeInt(rowsPosition + rowOffset);
+        }
+        rows.writeTo(output);
+    }
+
+    private static int stringId(String value, Map<String, Integer> stringIds, List<byte[]> stringBytes) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = stringBytes.size();
+            stringIds.put(value, id);
+            stringBytes.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<String> getColumnNames() {
+        if (columnNames == null) {
+            List<String> names = new ArrayList<>(columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                names.add(string(buffer.getInt(columnsPosition + column * 4)));
+            }
+            columnNames = Collections.unmodifiableList(names);
+        }
+        return columnNames;
+    }
+
+    @Override
+    public List<String> getTitles() {
+        List<String> titles = new ArrayList<>(getColumnNames());
+        titles.remove(ExcelSheetData.EXCEL_LOCATION);
+        return titles;
+    }
+
+    public String getValue(int row, int column) {
+        if (column < 0 || column >= columnCount) {
+            return null;
+        }
+        int position = buffer.getInt(rowOffsetsPosition + row * 4);
+        for (int i = 0; i < column; i++) {
+            position = skipVarint(position);
+        }
+        int value = readVarint(position);
+        return value == 0 ? null : string(value - 1);
+    }
+
+    /**
+     * Decodes every row once, values are visited in the order of titles.
+     */
+    @Override
+    public void forEachRow(List<String> titles, Consumer<String[]> consumer) {
+        int[] titleColumns = new int[titles.size()];
+        for (int i = 0; i < titleColumns.length; i++) {
+            titleColumns[i] = getColumnNames().indexOf(titles.get(i));
+        }
+        String[] rowValues = new String[columnCount];
+        String[] values = new String[titleColumns.length];
+        for (int row = 0; row < rowCount; row++) {
+            readRow(row, rowValues);
+            for (int i = 0; i < titleColumns.length; i++) {
+                values[i] = titleColumns[i] < 0 ? null : rowValues[titleColumns[i]];
+            }
+            consumer.accept(values);
+        }
+    }
+
+    private void readRow(int row, String[] rowValues) {
+        int position = buffer.getInt(rowOffsetsPosition + row * 4);
+        for (int column = 0; column < columnCount; column++) {
+            int value = readVarint(position);
+            position = skipVarint(position);
+            rowValues[column] = value == 0 ? null : string(value - 1);
+        }
+    }
+
+    private int readVarint(int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private int skipVarint(int position) {
+        while (buffer.get(position++) < 0) {
+            // continuation byte
+        }
+        return position;
+    }
+
+    /**
+     * Copies the block into a new ExcelSheetData.
+     */
+    public ExcelSheetData toSheetData() {
+        return toSheetData(new SchemaRegistry());
+    }
+
+    public ExcelSheetData toSheetData(SchemaRegistry schema) {
+        ExcelSheetData data = new ExcelSheetData(schema);
+        int[] cellColumns = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            cellColumns[column] = data.addColumn(getColumnNames().get(column));
+        }
+        String[] rowValues = new String[columnCount];
+        for (int row = 0; row < rowCount; row++) {
+            readRow(row, rowValues);
+            data.appendValues(cellColumns, rowValues, columnCount);
+        }
+        return data;
+    }
+
+    /**
+     * Decodes a string once, later reads of the same id share the instance.
+     */
+    private String string(int id) {
+        String value = strings[id];
+        if (value == null) {
+            int start = buffer.getInt(stringOffsetsPosition + id * 4);
+            int end = buffer.getInt(stringOffsetsPosition + id * 4 + 4);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer stringBuffer = buffer.duplicate();
+            stringBuffer.position(start);
+            stringBuffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = value;
+        }
+        return value;
+    }
+
+    /**
+     * A growing byte array of varints.
+     */
+    private static class VarintBuffer {
+        private byte[] bytes = new byte[BUFFER_SIZE];
+        private int size;
+
+        void writeVarint(int value) {
+            if (size + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream output) throws IOException {
+            output.write(bytes, 0, size);
+        }
+    }
+}
@@ -1,142 +1,452 @@
 package com.balance.excel.merge.model;
 
-import lombok.*;
+import com.balance.excel.merge.excel.SheetAgency;
+import com.balance.excel.merge.reader.SheetRowHandler;
+import com.balance.excel.merge.util.LongIntHashMap;
+import com.balance.excel.merge.util.PhoneUtils;
+import lombok.Getter;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
-@Getter
-@Setter
-@NoArgsConstructor
-@AllArgsConstructor
-@Builder
-public class ExcelSheetData {
+/**
+ * Titles and rows of excel data, stored by column. Every distinct title gets an ordinal from the SchemaRegistry
+ * once, and each column keeps its values in an array indexed by row ordinal. Columns with few distinct values,
+ * like school or class, are dictionary encoded.
+ */
+public class ExcelSheetData implements RowSource {
     public static final String EXCEL_LOCATION = "_数据来源_";
-    private List<String> titles;
-    private List<Map<String, String>> rows;
+    public static final String PHONE_TITLE = "家长电话";
+
+    @Getter
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<StringColumn> columns = new ArrayList<>();
+    private final SchemaRegistry schema;
+    /**
+     * registry ordinal of every column
+     */
+    private int[] columnOrdinals = new int[16];
+    /**
+     * column of every registry ordinal, -1 if this data has no such column
+     */
+    private int[] ordinalColumns = new int[0];
+    @Getter
+    private int rowCount;
+
+    /**
+     * Creates data with a registry of its own, merging it into data of another registry matches columns by name.
+     */
+    public ExcelSheetData() {
+        this(new SchemaRegistry());
+    }
+
+    public ExcelSheetData(SchemaRegistry schema) {
+        this.schema = schema;
+    }
 
     public static ExcelSheetData parseFromSheet(Sheet sheet, String fileName) {
-        ExcelSheetData data = new ExcelSheetData();
+        return parseFromSheet(sheet, fileName, new SchemaRegistry());
+    }
+
+    public static ExcelSheetData parseFromSheet(Sheet sheet, String fileName, SchemaRegistry schema) {
+        ExcelSheetData data = new ExcelSheetData(schema);
         data.loadDataFromSheet(sheet, fileName);
         return data;
     }
 
     public void loadDataFromSheet(Sheet sheet, String fileName) {
-        initializeTitle(sheet.getRow(0));
-        if (CollectionUtils.isEmpty(titles)) {
-            return;
-        }
-        loadAllData(sheet, fileName);
-    }
-
-    private void loadAllData(Sheet sheet, String fileName) {
-        String excelLocation = fileName + "/" + sheet.getSheetName();
-        rows = new ArrayList<>();
-        for (int rowIndex = 1; rowIndex < sheet.getLastRowNum() ; rowIndex++) {
+        SheetRowHandler rowHandler = rowHandler(fileName, sheet.getSheetName());
+        int titleCount = 0;
+        for (int rowIndex = 0; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
             Row row = sheet.getRow(rowIndex);
             if (row == null) {
                 break;
             }
-            Map<String, String> rowData = new HashMap<>();
-
-            for (int column = 0; column < titles.size(); column++) {
-                Cell c = row.getCell(column);
-                if (c == null) {
-                    continue;
-                }
-                c.setCellType(CellType.STRING);
-                String value = c.getStringCellValue().trim();
-                rowData.put(titles.get(column), value);
+            List<String> cells = readCellValues(row, rowIndex == 0 ? row.getLastCellNum() : titleCount);
+            if (!rowHandler.onRow(rowIndex, cells)) {
+                break;
+            }
+            if (rowIndex == 0) {
+                titleCount = titleCount(cells);
             }
+        }
+    }
 
-            if (CollectionUtils.isEmpty(rowData)) {
-                break;
+    private static List<String> readCellValues(Row row, int cellCount) {
+        List<String> values = new ArrayList<>();
+        for (int column = 0; column < cellCount; column++) {
+            Cell c = row.getCell(column);
+            if (c == null) {
+                values.add(null);
+                continue;
             }
-            rowData.put(EXCEL_LOCATION, excelLocation);
-            rows.add(rowData);
+            values.add(SheetAgency.TEXT_READER.read(c));
         }
+        return values;
     }
 
+    /**
+     * Writes titles and rows as a block of BinarySheetData.
+     */
+    public void writeTo(DataOutputStream output) throws IOException {
+        BinarySheetData.write(this, output);
+    }
 
-    private void initializeTitle(Row row) {
-        if (row == null) {
-            return;
+    /**
+     * Reads data written by writeTo.
+     */
+    public static ExcelSheetData readFrom(DataInputStream input) throws IOException {
+        return readFrom(input, new SchemaRegistry());
+    }
+
+    public static ExcelSheetData readFrom(DataInputStream input, SchemaRegistry schema) throws IOException {
+        return BinarySheetData.read(input).toSheetData(schema);
+    }
+
+    /**
+     * Creates the handler which turns the rows of one sheet into titles and rows of this data.
+     * The first row is the title row, reading stops at the first missing or empty row.
+     */
+    public SheetRowHandler rowHandler(String fileName, String sheetName) {
+        String excelLocation = fileName + "/" + sheetName;
+        return new SheetRowHandler() {
+            private int nextRow = 0;
+            private int[] cellColumns;
+            private int locationColumn;
+
+            @Override
+            public boolean onRow(int rowIndex, List<String> cells) {
+                if (rowIndex != nextRow++) {
+                    return false;
+                }
+                if (rowIndex == 0) {
+                    cellColumns = initializeTitle(cells);
+                    if (cellColumns.length == 0) {
+                        return false;
+                    }
+                    locationColumn = addColumn(EXCEL_LOCATION);
+                    return true;
+                }
+                return appendRow(cells, cellColumns, locationColumn, excelLocation);
+            }
+        };
+    }
+
+    /**
+     * @return the column ordinal of every title cell
+     */
+    private int[] initializeTitle(List<String> cells) {
+        int titleCount = titleCount(cells);
+        List<String> header = new ArrayList<>(titleCount);
+        for (int i = 0; i < titleCount; i++) {
+            header.add(cells.get(i).trim());
+        }
+        int[] headerOrdinals = schema.ordinals(header);
+        int[] cellColumns = new int[headerOrdinals.length];
+        for (int i = 0; i < cellColumns.length; i++) {
+            cellColumns[i] = addOrdinal(headerOrdinals[i]);
         }
+        return cellColumns;
+    }
 
-        titles = new ArrayList<>();
-        for (int i = 0; ; i++) {
-            Cell c = row.getCell(i);
-            if (c == null) {
+    private static int titleCount(List<String> cells) {
+        int count = 0;
+        for (String cell : cells) {
+            if (cell == null || StringUtils.isEmpty(cell.trim())) {
                 break;
             }
-            c.setCellType(CellType.STRING);
-            String value = c.getStringCellValue().trim();
-            if (StringUtils.isEmpty(value)) {
-                break;
+            count++;
+        }
+        return count;
+    }
+
+    private boolean appendRow(List<String> cells, int[] cellColumns, int locationColumn, String excelLocation) {
+        int cellCount = Math.min(cellColumns.length, cells.size());
+        boolean isEmptyRow = true;
+        for (int i = 0; i < cellCount && isEmptyRow; i++) {
+            isEmptyRow = cells.get(i) == null;
+        }
+        if (isEmptyRow) {
+            return false;
+        }
+
+        for (int i = 0; i < cellCount; i++) {
+            String value = cells.get(i);
+            if (value != null) {
+                columns.get(cellColumns[i]).set(rowCount, value.trim());
             }
+        }
+        columns.get(locationColumn).set(rowCount, excelLocation);
+        rowCount++;
+        return true;
+    }
+
+    int addColumn(String name) {
+        return addOrdinal(schema.ordinal(name));
+    }
 
-            titles.add(value);
+    private int addOrdinal(int ordinal) {
+        int column = columnOf(ordinal);
+        if (column >= 0) {
+            return column;
         }
+        if (ordinal >= ordinalColumns.length) {
+            int oldLength = ordinalColumns.length;
+            ordinalColumns = Arrays.copyOf(ordinalColumns, Math.max(ordinal + 1, oldLength * 2));
+            Arrays.fill(ordinalColumns, oldLength, ordinalColumns.length, -1);
+        }
+        column = columns.size();
+        if (column == columnOrdinals.length) {
+            columnOrdinals = Arrays.copyOf(columnOrdinals, column * 2);
+        }
+        columnOrdinals[column] = ordinal;
+        ordinalColumns[ordinal] = column;
+
+        String name = schema.name(ordinal);
+        columnNames.add(name);
+        columns.add(new StringColumn());
+        if (!EXCEL_LOCATION.equals(name)) {
+            titles.add(name);
+        }
+        return column;
     }
 
-    public ExcelSheetData merge(ExcelSheetData otherData) {
-        if (this.titles == null) {
-            titles = new ArrayList<>();
+    private int columnOf(int ordinal) {
+        return ordinal >= 0 && ordinal < ordinalColumns.length ? ordinalColumns[ordinal] : -1;
+    }
+
+    /**
+     * Appends a row from values of the given column ordinals.
+     */
+    void appendValues(int[] cellColumns, String[] values, int cellCount) {
+        for (int i = 0; i < cellCount; i++) {
+            columns.get(cellColumns[i]).set(rowCount, values[i]);
         }
-        if (rows == null) {
-            rows = new ArrayList<>();
+        rowCount++;
+    }
+
+    /**
+     * @return names of all columns by ordinal, including EXCEL_LOCATION
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(columnNames);
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    /**
+     * @return the column ordinal of the title, -1 if there is no such column
+     */
+    public int columnIndex(String title) {
+        return columnOf(schema.find(title));
+    }
+
+    public int[] columnIndexes(List<String> titles) {
+        int[] indexes = new int[titles.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = columnIndex(titles.get(i));
         }
+        return indexes;
+    }
 
-        for (String title : otherData.getTitles()) {
-            if (titles.contains(title)) {
-                continue;
+    public String getValue(int row, int column) {
+        return column < 0 ? null : columns.get(column).get(row);
+    }
+
+    public RowView getRow(int row) {
+        return new RowView(row);
+    }
+
+    @Override
+    public void forEachRow(List<String> titles, Consumer<String[]> consumer) {
+        int[] indexes = columnIndexes(titles);
+        String[] values = new String[indexes.length];
+        for (int row = 0; row < rowCount; row++) {
+            for (int i = 0; i < indexes.length; i++) {
+                values[i] = getValue(row, indexes[i]);
             }
-            titles.add(title);
+            consumer.accept(values);
         }
+    }
 
-        rows.addAll(otherData.getRows());
+    public ExcelSheetData merge(ExcelSheetData otherData) {
+        int[] targetColumns = columnPermutation(otherData);
+        for (int column = 0; column < targetColumns.length; column++) {
+            columns.get(targetColumns[column]).appendAll(otherData.columns.get(column), rowCount, otherData.rowCount);
+        }
+        rowCount += otherData.rowCount;
         return this;
     }
 
+    /**
+     * @return the ordinal in the registry of every column
+     */
+    int[] columnOrdinals(SchemaRegistry registry) {
+        if (registry == schema) {
+            return Arrays.copyOf(columnOrdinals, columns.size());
+        }
+        int[] ordinals = new int[columns.size()];
+        for (int column = 0; column < ordinals.length; column++) {
+            ordinals[column] = registry.ordinal(columnNames.get(column));
+        }
+        return ordinals;
+    }
+
+    /**
+     * @return the column in this data of every column of otherData, missing columns are added
+     */
+    private int[] columnPermutation(ExcelSheetData otherData) {
+        int[] targetColumns = new int[otherData.columns.size()];
+        for (int column = 0; column < targetColumns.length; column++) {
+            targetColumns[column] = otherData.schema == schema
+                    ? addOrdinal(otherData.columnOrdinals[column])
+                    : addColumn(otherData.columnNames.get(column));
+        }
+        return targetColumns;
+    }
+
+    /**
+     * Merges rows with the same phone into the first of them, rows are kept in the order of first appearance.
+     * Phones are compared by their packed digits, see PhoneUtils.packPhone, other values by the whole text.
+     */
     public void distinctByPhone() {
-        Map<String, Map<String, String>> rowsMap = new HashMap<>();
-        for (Map<String, String> row : rows) {
-            String phone = row.get("家长电话");
+        distinctByPhone(false);
+    }
 
-            Map<String, String> existRow = rowsMap.get(phone);
-            if (existRow == null) {
-                rowsMap.put(phone, row);
-            } else {
-                mergeRow(existRow, row);
+    /**
+     * @param accumulateValues keep the distinct values of every merged cell in a set and join them once at the end.
+     *                         Otherwise a value is appended to the joined text unless the text already contains it,
+     *                         which is quadratic for many duplicates and skips values which are a substring.
+     */
+    public void distinctByPhone(boolean accumulateValues) {
+        distinct(columnIndex(PHONE_TITLE), accumulateValues);
+    }
 
+    /**
+     * Merges rows with the same phone in phoneColumn into the first of them, which keeps its own phone.
+     * @return the former ordinals of the remaining rows
+     */
+    int[] distinct(int phoneColumn, boolean accumulateValues) {
+        StringColumn phones = phoneColumn < 0 ? null : columns.get(phoneColumn);
+        long[] codeKeys = null;
+        if (phones != null && phones.isDictionaryEncoded()) {
+            // few distinct phones, pack every phone of the dictionary only once
+            codeKeys = new long[phones.getDictionarySize() + 1];
+            for (int code = 0; code < codeKeys.length; code++) {
+                codeKeys[code] = PhoneUtils.packPhone(phones.getDictionaryValue(code));
             }
         }
 
-        rows.clear();
-        rows.addAll(rowsMap.values());
-    }
+        ValueAccumulator accumulator = accumulateValues ? new ValueAccumulator(columns, phoneColumn) : null;
+        LongIntHashMap packedFirstRows = new LongIntHashMap();
+        Map<String, Integer> otherFirstRows = new HashMap<>();
+        int[] keptRows = new int[rowCount];
+        int keptCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            // merging earlier rows may turn the phone column plain, the current row is not changed yet
+            long key = codeKeys != null && phones.isDictionaryEncoded()
+                    ? codeKeys[phones.getCode(row)]
+                    : PhoneUtils.packPhone(getValue(row, phoneColumn));
 
-    private void mergeRow(Map<String, String> existRow, Map<String, String> row) {
-        for (Map.Entry<String, String> entry : row.entrySet()) {
-            String newValue = entry.getValue();
-            String originValue = existRow.get(entry.getKey());
+            int existRow;
+            if (key >= 0) {
+                existRow = packedFirstRows.get(key);
+                if (existRow < 0) {
+                    packedFirstRows.put(key, row);
+                }
+            } else {
+                String phone = getValue(row, phoneColumn);
+                Integer firstRow = otherFirstRows.get(phone);
+                existRow = firstRow == null ? -1 : firstRow;
+                if (firstRow == null) {
+                    otherFirstRows.put(phone, row);
+                }
+            }
 
-            if (StringUtils.isEmpty(originValue)) {
-                originValue = newValue;
-            } else if (!originValue.contains(newValue)) {
-                originValue = originValue + ";" + newValue;
+            if (existRow < 0) {
+                keptRows[keptCount++] = row;
+            } else if (accumulator != null) {
+                accumulator.merge(existRow, row);
             } else {
+                mergeRow(existRow, row, phoneColumn);
+            }
+        }
+        if (accumulator != null) {
+            accumulator.join();
+        }
+
+        for (StringColumn column : columns) {
+            column.retain(keptRows, keptCount);
+        }
+        rowCount = keptCount;
+        return Arrays.copyOf(keptRows, keptCount);
+    }
+
+    private void mergeRow(int existRow, int row, int phoneColumn) {
+        for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++) {
+            if (columnIndex == phoneColumn) {
+                // the phones match already, the first one is kept as it was written
+                continue;
+            }
+            StringColumn column = columns.get(columnIndex);
+            if (column.isDictionaryEncoded() && column.getCode(row) == column.getCode(existRow)) {
+                // same value, or no value in both rows
+                continue;
+            }
+            String newValue = column.get(row);
+            if (newValue == null) {
                 continue;
             }
-            existRow.put(entry.getKey(), originValue);
+            String originValue = column.get(existRow);
+            String mergedValue = mergeValue(originValue, newValue);
+            if (mergedValue != originValue) {
+                column.set(existRow, mergedValue);
+            }
+        }
+    }
+
+    /**
+     * @return newValue if originValue is empty, both joined by ';' unless originValue contains newValue already
+     */
+    static String mergeValue(String originValue, String newValue) {
+        if (StringUtils.isEmpty(originValue)) {
+            return newValue;
+        }
+        return originValue.contains(newValue) ? originValue : originValue + ";" + newValue;
+    }
+
+    /**
+     * A light view of one row, values are read from the columns on demand.
+     */
+    public class RowView {
+        @Getter
+        private final int index;
+
+        private RowView(int index) {
+            this.index = index;
+        }
+
+        public String get(int column) {
+            return getValue(index, column);
+        }
+
+        public String get(String title) {
+            return getValue(index, columnIndex(title));
         }
     }
 }
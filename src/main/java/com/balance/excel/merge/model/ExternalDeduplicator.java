@@ -0,0 +1,366 @@
+package com.balance.excel.merge.model;
+
+import com.balance.excel.merge.util.PhoneUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Deduplicates rows by phone without keeping all of them in memory.
+ * Added rows are hash partitioned by phone into files, so all rows of a phone are in the same partition.
+ * Every partition small enough for the memory budget is loaded and deduplicated with
+ * ExcelSheetData.distinctByPhone, larger ones are split again first. The deduplicated partitions are
+ * merged back by the sequence of their first row, which gives the same rows in the same order as
+ * deduplicating everything in memory.
+ */
+@Slf4j
+public class ExternalDeduplicator implements RowSource, Closeable {
+    private static final int PARTITION_COUNT = 64;
+    private static final int MAX_SPLIT_DEPTH = 3;
+    /** A loaded partition takes roughly so many times its file size of heap. */
+    private static final int HEAP_EXPANSION = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File workDirectory;
+    private final long memoryBudget;
+    private final boolean accumulateValues;
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> columnNames = new ArrayList<>();
+    private final Map<String, Integer> columnIndexMap = new HashMap<>();
+    private final File[] partitionFiles = new File[PARTITION_COUNT];
+    private final DataOutputStream[] partitionOutputs = new DataOutputStream[PARTITION_COUNT];
+    private long sequence;
+    private int fileCount;
+
+    /**
+     * @param spillDirectory parent of the work directory, the system temp directory if null
+     * @param memoryBudget bytes of heap a loaded partition may take
+     * @param accumulateValues see ExcelSheetData.distinctByPhone(boolean)
+     */
+    public ExternalDeduplicator(File spillDirectory, long memoryBudget, boolean accumulateValues) throws IOException {
+        this.workDirectory = spillDirectory == null
+                ? Files.createTempDirectory("excel-merge-dedup").toFile()
+                : Files.createTempDirectory(spillDirectory.toPath(), "excel-merge-dedup").toFile();
+        this.memoryBudget = memoryBudget;
+        this.accumulateValues = accumulateValues;
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            partitionFiles[i] = newFile("partition");
+            partitionOutputs[i] = openOutput(partitionFiles[i]);
+        }
+    }
+
+    /**
+     * Spills all rows of data to the partitions.
+     */
+    public void add(ExcelSheetData data) throws IOException {
+        for (String title : data.getTitles()) {
+            addColumn(title);
+        }
+        List<String> dataColumns = data.getColumnNames();
+        int[] globalColumns = new int[dataColumns.size()];
+        for (int i = 0; i < globalColumns.length; i++) {
+            globalColumns[i] = addColumn(dataColumns.get(i));
+        }
+
+        int phoneColumn = data.columnIndex(ExcelSheetData.PHONE_TITLE);
+        for (int row = 0; row < data.getRowCount(); row++) {
+            String phone = data.getValue(row, phoneColumn);
+            writeRow(partitionOutputs[partitionOf(phone, 0)], sequence++, data, row, globalColumns);
+        }
+    }
+
+    private int addColumn(String name) {
+        Integer index = columnIndexMap.get(name);
+        if (index != null) {
+            return index;
+        }
+        index = columnNames.size();
+        columnIndexMap.put(name, index);
+        columnNames.add(name);
+        if (!ExcelSheetData.EXCEL_LOCATION.equals(name)) {
+            titles.add(name);
+        }
+        return index;
+    }
+
+    @Override
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    /**
+     * Deduplicates the partitions and visits the merged rows. Rows can't be added any more afterwards.
+     */
+    @Override
+    public void forEachRow(List<String> titles, Consumer<String[]> consumer) {
+        try {
+            for (DataOutputStream output : partitionOutputs) {
+                output.close();
+            }
+            List<File> runs = new ArrayList<>();
+            for (File partition : partitionFiles) {
+                deduplicate(partition, 0, runs);
+            }
+            mergeRuns(runs, titles, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed in deduplicating rows in " + workDirectory, e);
+        }
+    }
+
+    private void deduplicate(File partition, int depth, List<File> runs) throws IOException {
+        if (partition.length() == 0) {
+            return;
+        }
+        if (partition.length() * HEAP_EXPANSION > memoryBudget && depth < MAX_SPLIT_DEPTH) {
+            log.info("Split partition:{} of {} bytes, it exceeds the memory budget.", partition.getName(), partition.length());
+            for (File subPartition : split(partition, depth + 1)) {
+                deduplicate(subPartition, depth + 1, runs);
+            }
+            return;
+        }
+
+        // spilled rows are appended by their global column ids, new data numbers its columns in the order they
+        // are added, so every column gets its global id
+        ExcelSheetData data = new ExcelSheetData();
+        int[] globalColumns = new int[columnNames.size()];
+        for (int i = 0; i < globalColumns.length; i++) {
+            globalColumns[i] = data.addColumn(columnNames.get(i));
+        }
+        long[] sequences = new long[16];
+        try (DataInputStream input = openInput(partition)) {
+            SpilledRow row = new SpilledRow();
+            while (row.read(input)) {
+                if (data.getRowCount() == sequences.length) {
+                    sequences = Arrays.copyOf(sequences, sequences.length * 2);
+                }
+                sequences[data.getRowCount()] = row.sequence;
+                data.appendValues(row.columns, row.values, row.cellCount);
+            }
+        }
+        Files.delete(partition.toPath());
+
+        int[] keptRows = data.distinct(data.columnIndex(ExcelSheetData.PHONE_TITLE), accumulateValues);
+        File run = newFile("run");
+        try (DataOutputStream output = openOutput(run)) {
+            for (int row = 0; row < keptRows.length; row++) {
+                writeRow(output, sequences[keptRows[row]], data, row, globalColumns);
+            }
+        }
+        runs.add(run);
+    }
+
+    private List<File> split(File partition, int depth) throws IOException {
+        List<File> subPartitions = new ArrayList<>();
+        DataOutputStream[] outputs = new DataOutputStream[PARTITION_COUNT];
+        try {
+            for (int i = 0; i < PARTITION_COUNT; i++) {
+                File subPartition = newFile("partition");
+                subPartitions.add(subPartition);
+                outputs[i] = openOutput(subPartition);
+            }
+            int phoneColumn = columnIndexMap.getOrDefault(ExcelSheetData.PHONE_TITLE, -1);
+            try (DataInputStream input = openInput(partition)) {
+                SpilledRow row = new SpilledRow();
+                while (row.read(input)) {
+                    row.write(outputs[partitionOf(row.get(phoneColumn), depth)]);
+                }
+            }
+        } finally {
+            for (DataOutputStream output : outputs) {
+                if (output != null) {
+                    output.close();
+                }
+            }
+        }
+        Files.delete(partition.toPath());
+        return subPartitions;
+    }
+
+    private void mergeRuns(List<File> runs, List<String> titles, Consumer<String[]> consumer) throws IOException {
+        int[] outputPositions = new int[columnNames.size()];
+        Arrays.fill(outputPositions, -1);
+        for (int i = 0; i < titles.size(); i++) {
+            Integer column = columnIndexMap.get(titles.get(i));
+            if (column != null) {
+                outputPositions[column] = i;
+            }
+        }
+
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Comparator.comparingLong(r -> r.row.sequence));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (File run : runs) {
+                RunReader reader = new RunReader(openInput(run));
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            String[] values = new String[titles.size()];
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                Arrays.fill(values, null);
+                SpilledRow row = reader.row;
+                for (int i = 0; i < row.cellCount; i++) {
+                    int position = outputPositions[row.columns[i]];
+                    if (position >= 0) {
+                        values[position] = row.values[i];
+                    }
+                }
+                consumer.accept(values);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.input.close();
+            }
+        }
+    }
+
+    /**
+     * Phones with the same packed key must go to the same partition, whatever their formatting.
+     */
+    private static int partitionOf(String phone, int depth) {
+        long key = PhoneUtils.packPhone(phone);
+        int hash = key >= 0 ? Long.hashCode(key) : (phone == null ? 0 : phone.hashCode());
+        hash = (hash + depth) * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, PARTITION_COUNT);
+    }
+
+    private static void writeRow(DataOutputStream output, long sequence, ExcelSheetData data, int row,
+                                 int[] globalColumns) throws IOException {
+        int cellCount = 0;
+        for (int column = 0; column < globalColumns.length; column++) {
+            if (data.getValue(row, column) != null) {
+                cellCount++;
+            }
+        }
+        output.writeLong(sequence);
+        output.writeInt(cellCount);
+        for (int column = 0; column < globalColumns.length; column++) {
+            String value = data.getValue(row, column);
+            if (value != null) {
+                output.writeInt(globalColumns[column]);
+                writeString(output, value);
+            }
+        }
+    }
+
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private File newFile(String prefix) {
+        return new File(workDirectory, prefix + "-" + (fileCount++) + ".bin");
+    }
+
+    private static DataOutputStream openOutput(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    }
+
+    private static DataInputStream openInput(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataOutputStream output : partitionOutputs) {
+            if (output != null) {
+                output.close();
+            }
+        }
+        FileSystemUtils.deleteRecursively(workDirectory);
+    }
+
+    /**
+     * One row in a spill file: sequence, cell count, then column ordinal and value of every cell.
+     */
+    private static class SpilledRow {
+        private long sequence;
+        private int cellCount;
+        private int[] columns = new int[16];
+        private String[] values = new String[16];
+
+        boolean read(DataInputStream input) throws IOException {
+            try {
+                sequence = input.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            cellCount = input.readInt();
+            if (columns.length < cellCount) {
+                columns = new int[cellCount];
+                values = new String[cellCount];
+            }
+            for (int i = 0; i < cellCount; i++) {
+                columns[i] = input.readInt();
+                values[i] = readString(input);
+            }
+            return true;
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeLong(sequence);
+            output.writeInt(cellCount);
+            for (int i = 0; i < cellCount; i++) {
+                output.writeInt(columns[i]);
+                writeString(output, values[i]);
+            }
+        }
+
+        String get(int column) {
+            for (int i = 0; i < cellCount; i++) {
+                if (columns[i] == column) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class RunReader {
+        private final DataInputStream input;
+        private final SpilledRow row = new SpilledRow();
+
+        RunReader(DataInputStream input) {
+            this.input = input;
+        }
+
+        boolean next() throws IOException {
+            return row.read(input);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.balance.excel.merge.model;
+
+import com.balance.excel.merge.util.PhoneUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Deduplicates rows by phone while sources are added, replaced and removed.
+ * Every phone keeps the rows of all sources with it, and only phones whose rows changed are merged again.
+ * Sources are ordered by name, so the merged rows are the same as merging all current sources with
+ * ExcelSheetData.distinctByPhone in that order.
+ */
+public class IncrementalDeduplicator implements RowSource {
+    private static final Comparator<RowRef> ROW_ORDER = Comparator
+            .comparing((RowRef rowRef) -> rowRef.source.name)
+            .thenComparingInt(rowRef -> rowRef.sheet)
+            .thenComparingInt(rowRef -> rowRef.row);
+
+    private final boolean accumulateValues;
+    private final SchemaRegistry schema;
+    private final Map<String, Source> sources = new TreeMap<>();
+    private final Map<Object, PhoneGroup> groups = new HashMap<>();
+    private final Set<PhoneGroup> dirtyGroups = new LinkedHashSet<>();
+
+    /**
+     * @param accumulateValues see ExcelSheetData.distinctByPhone(boolean)
+     */
+    public IncrementalDeduplicator(boolean accumulateValues) {
+        this(accumulateValues, new SchemaRegistry());
+    }
+
+    /**
+     * @param schema registry of the sheets which are put, sheets of another registry are matched by title
+     */
+    public IncrementalDeduplicator(boolean accumulateValues, SchemaRegistry schema) {
+        this.accumulateValues = accumulateValues;
+        this.schema = schema;
+    }
+
+    /**
+     * Adds the sheets of a source, the former sheets of the same source are removed first.
+     */
+    public void put(String sourceName, List<ExcelSheetData> sheetDatas) {
+        remove(sourceName);
+        Source source = new Source(sourceName, sheetDatas);
+        sources.put(sourceName, source);
+        for (int sheet = 0; sheet < sheetDatas.size(); sheet++) {
+            ExcelSheetData data = sheetDatas.get(sheet);
+            int phoneColumn = data.columnIndex(ExcelSheetData.PHONE_TITLE);
+            for (int row = 0; row < data.getRowCount(); row++) {
+                PhoneGroup group = groups.computeIfAbsent(phoneKey(data.getValue(row, phoneColumn)), PhoneGroup::new);
+                group.rows.add(new RowRef(source, sheet, row));
+                source.groups.add(group);
+                dirtyGroups.add(group);
+            }
+        }
+    }
+
+    /**
+     * Retracts all rows of the source.
+     */
+    public void remove(String sourceName) {
+        Source source = sources.remove(sourceName);
+        if (source == null) {
+            return;
+        }
+        for (PhoneGroup group : source.groups) {
+            group.rows.removeIf(rowRef -> rowRef.source == source);
+            dirtyGroups.add(group);
+        }
+    }
+
+    public boolean contains(String sourceName) {
+        return sources.containsKey(sourceName);
+    }
+
+    public Set<String> getSourceNames() {
+        return Collections.unmodifiableSet(sources.keySet());
+    }
+
+    /**
+     * Phones are compared by their packed digits like in ExcelSheetData.distinctByPhone, other values by the text.
+     */
+    private static Object phoneKey(String phone) {
+        long packedPhone = PhoneUtils.packPhone(phone);
+        return packedPhone >= 0 ? (Object) packedPhone : phone;
+    }
+
+    /**
+     * Titles of sheets without rows are left out, like ExcelMerger leaves out these sheets.
+     */
+    @Override
+    public List<String> getTitles() {
+        Set<String> titles = new LinkedHashSet<>();
+        for (Source source : sources.values()) {
+            for (ExcelSheetData data : source.sheetDatas) {
+                if (!data.isEmpty()) {
+                    titles.addAll(data.getTitles());
+                }
+            }
+        }
+        return new ArrayList<>(titles);
+    }
+
+    @Override
+    public void forEachRow(List<String> titles, Consumer<String[]> consumer) {
+        mergeDirtyGroups();
+        List<PhoneGroup> orderedGroups = new ArrayList<>(groups.values());
+        orderedGroups.sort(Comparator.comparing(group -> group.rows.get(0), ROW_ORDER));
+
+        int[] ordinals = new int[titles.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = schema.find(titles.get(i));
+        }
+        String[] values = new String[ordinals.length];
+        for (PhoneGroup group : orderedGroups) {
+            for (int i = 0; i < ordinals.length; i++) {
+                values[i] = ordinals[i] >= 0 && ordinals[i] < group.mergedValues.length
+                        ? group.mergedValues[ordinals[i]]
+                        : null;
+            }
+            consumer.accept(values);
+        }
+    }
+
+    private void mergeDirtyGroups() {
+        for (PhoneGroup group : dirtyGroups) {
+            if (group.rows.isEmpty()) {
+                groups.remove(group.key);
+            } else {
+                group.rows.sort(ROW_ORDER);
+                group.mergedValues = mergeRows(group.rows);
+            }
+        }
+        dirtyGroups.clear();
+    }
+
+    /**
+     * Rows are merged like ExcelSheetData.distinctByPhone merges them, the phone of the first row is kept.
+     * @return the merged value of every ordinal
+     */
+    @SuppressWarnings("unchecked")
+    private String[] mergeRows(List<RowRef> rows) {
+        String[] mergedValues = new String[0];
+        Set<String>[] valueSets = new Set[0];
+        int phoneOrdinal = schema.find(ExcelSheetData.PHONE_TITLE);
+        for (RowRef rowRef : rows) {
+            ExcelSheetData data = rowRef.source.sheetDatas.get(rowRef.sheet);
+            int[] ordinals = rowRef.source.ordinals.get(rowRef.sheet);
+            for (int column = 0; column < ordinals.length; column++) {
+                String value = data.getValue(rowRef.row, column);
+                if (value == null) {
+                    continue;
+                }
+                int ordinal = ordinals[column];
+                if (ordinal == phoneOrdinal && rowRef != rows.get(0)) {
+                    continue;
+                }
+                if (ordinal >= mergedValues.length) {
+                    mergedValues = Arrays.copyOf(mergedValues, ordinal + 1);
+                    valueSets = Arrays.copyOf(valueSets, ordinal + 1);
+                }
+
+                if (!accumulateValues) {
+                    mergedValues[ordinal] = ExcelSheetData.mergeValue(mergedValues[ordinal], value);
+                    continue;
+                }
+                if (valueSets[ordinal] == null) {
+                    valueSets[ordinal] = new LinkedHashSet<>();
+                }
+                valueSets[ordinal].add(value);
+            }
+        }
+        if (accumulateValues) {
+            for (int ordinal = 0; ordinal < valueSets.length; ordinal++) {
+                if (valueSets[ordinal] != null) {
+                    mergedValues[ordinal] = ValueAccumulator.joinValues(valueSets[ordinal]);
+                }
+            }
+        }
+        return mergedValues;
+    }
+
+    private class Source {
+        private final String name;
+        private final List<ExcelSheetData> sheetDatas;
+        /**
+         * registry ordinal of every column of every sheet
+         */
+        private final List<int[]> ordinals = new ArrayList<>();
+        private final Set<PhoneGroup> groups = new LinkedHashSet<>();
+
+        Source(String name, List<ExcelSheetData> sheetDatas) {
+            this.name = name;
+            this.sheetDatas = sheetDatas;
+            for (ExcelSheetData data : sheetDatas) {
+                ordinals.add(data.columnOrdinals(schema));
+            }
+        }
+    }
+
+    private static class RowRef {
+        private final Source source;
+        private final int sheet;
+        private final int row;
+
+        RowRef(Source source, int sheet, int row) {
+            this.source = source;
+            this.sheet = sheet;
+            this.row = row;
+        }
+    }
+
+    private static class PhoneGroup {
+        private final Object key;
+        private final List<RowRef> rows = new ArrayList<>();
+        private String[] mergedValues = new String[0];
+
+        PhoneGroup(Object key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.balance.excel.merge.model;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Merged rows which can be written out.
+ */
+public interface RowSource {
+    List<String> getTitles();
+
+    /**
+     * Visits all rows in order.
+     * @param titles the columns to read, a title without column gives null values
+     * @param consumer receives the values of each row in the order of titles, the array is reused between rows
+     */
+    void forEachRow(List<String> titles, Consumer<String[]> consumer);
+}
@@ -0,0 +1,63 @@
+package com.balance.excel.merge.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every distinct title a stable column ordinal, shared by all ExcelSheetData of a merge.
+ * The ordinals of a whole title row are cached by the titles, so sheets with identical headers
+ * reuse one mapping instead of looking up every title again.
+ * A registry only grows, so it is created for one merge run and dropped with its data.
+ */
+public class SchemaRegistry {
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<List<String>, int[]> headerOrdinals = new ConcurrentHashMap<>();
+
+    /**
+     * @return the ordinal of the title, a new one is assigned to an unknown title
+     */
+    public int ordinal(String title) {
+        Integer ordinal = ordinals.get(title);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (this) {
+            return ordinals.computeIfAbsent(title, key -> {
+                names.add(key);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * @return the ordinal of the title, -1 if the title is unknown
+     */
+    public int find(String title) {
+        Integer ordinal = ordinals.get(title);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public synchronized String name(int ordinal) {
+        return names.get(ordinal);
+    }
+
+    /**
+     * @return the ordinal of every title of the header, the array is shared and must not be modified
+     */
+    public int[] ordinals(List<String> header) {
+        int[] cached = headerOrdinals.get(header);
+        if (cached != null) {
+            return cached;
+        }
+        int[] headerOrdinal = new int[header.size()];
+        for (int i = 0; i < headerOrdinal.length; i++) {
+            headerOrdinal[i] = ordinal(header.get(i));
+        }
+        headerOrdinals.putIfAbsent(Collections.unmodifiableList(new ArrayList<>(header)), headerOrdinal);
+        return headerOrdinal;
+    }
+}
@@ -0,0 +1,193 @@
+package com.balance.excel.merge.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values of one column, indexed by row ordinal. Missing cells are null.
+ * A column starts dictionary encoded: every row keeps an int code of its value and each distinct value is
+ * stored once. When the column turns out to have too many distinct values it switches to plain storage.
+ */
+class StringColumn {
+    private static final int[] EMPTY_CODES = new int[0];
+    /** The cardinality is checked only after so many rows, the first rows are always fairly distinct. */
+    private static final int CARDINALITY_CHECK_SIZE = 1024;
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    /** code - 1 is the index in dictionary, 0 is a missing cell. null once the column is plain. */
+    private int[] codes = EMPTY_CODES;
+    private List<String> dictionary = new ArrayList<>();
+    private Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+    private String[] values;
+    private int size;
+
+    public boolean isDictionaryEncoded() {
+        return codes != null;
+    }
+
+    public String get(int row) {
+        if (row >= size) {
+            return null;
+        }
+        if (codes == null) {
+            return values[row];
+        }
+        int code = codes[row];
+        return code == 0 ? null : dictionary.get(code - 1);
+    }
+
+    /**
+     * @return the code of the value at row, 0 for a missing cell. Equal codes are equal values.
+     * Only valid while the column is dictionary encoded.
+     */
+    public int getCode(int row) {
+        return row < size ? codes[row] : 0;
+    }
+
+    /**
+     * @return the number of codes, codes are from 1 to getDictionarySize()
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    public String getDictionaryValue(int code) {
+        return code == 0 ? null : dictionary.get(code - 1);
+    }
+
+    public void set(int row, String value) {
+        ensureCapacity(row + 1);
+        if (codes != null) {
+            int code = encode(value);
+            if (code < 0) {
+                toPlain();
+            } else {
+                codes[row] = code;
+            }
+        }
+        if (codes == null) {
+            values[row] = value;
+        }
+        if (row >= size) {
+            size = row + 1;
+        }
+    }
+
+    /**
+     * Copies the first count rows of source to the rows starting at offset.
+     * Between two dictionary encoded columns only the codes are translated.
+     */
+    public void appendAll(StringColumn source, int offset, int count) {
+        int copySize = Math.min(source.size, count);
+        if (copySize == 0) {
+            return;
+        }
+        ensureCapacity(offset + copySize);
+
+        int[] translation = codes != null && source.codes != null ? translate(source) : null;
+        if (translation != null) {
+            for (int i = 0; i < copySize; i++) {
+                codes[offset + i] = translation[source.codes[i]];
+            }
+            size = Math.max(size, offset + copySize);
+            return;
+        }
+        for (int i = 0; i < copySize; i++) {
+            String value = source.get(i);
+            if (value != null) {
+                set(offset + i, value);
+            }
+        }
+    }
+
+    /**
+     * @return the code in this column of every code of source, null if this column has to become plain
+     */
+    private int[] translate(StringColumn source) {
+        int[] translation = new int[source.dictionary.size() + 1];
+        for (int i = 0; i < source.dictionary.size(); i++) {
+            int code = encode(source.dictionary.get(i));
+            if (code < 0) {
+                toPlain();
+                return null;
+            }
+            translation[i + 1] = code;
+        }
+        return translation;
+    }
+
+    /**
+     * Keeps only the given rows, in the given order. Rows must be ascending.
+     */
+    public void retain(int[] rows, int count) {
+        int newSize = 0;
+        // rows[i] >= i, so rows after the current size stay empty
+        for (int i = 0, end = Math.min(count, size); i < end; i++) {
+            boolean hasValue;
+            if (codes != null) {
+                codes[i] = getCode(rows[i]);
+                hasValue = codes[i] != 0;
+            } else {
+                values[i] = get(rows[i]);
+                hasValue = values[i] != null;
+            }
+            if (hasValue) {
+                newSize = i + 1;
+            }
+        }
+        if (codes != null) {
+            Arrays.fill(codes, newSize, size, 0);
+        } else {
+            Arrays.fill(values, newSize, size, null);
+        }
+        size = newSize;
+    }
+
+    /**
+     * @return the code of value, -1 if adding it would make the dictionary too large
+     */
+    private int encode(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = dictionaryIndex.get(value);
+        if (index != null) {
+            return index + 1;
+        }
+        int dictionarySize = dictionary.size() + 1;
+        if (dictionarySize > MAX_DICTIONARY_SIZE
+                || (size >= CARDINALITY_CHECK_SIZE && dictionarySize > size / 2)) {
+            return -1;
+        }
+        dictionaryIndex.put(value, dictionary.size());
+        dictionary.add(value);
+        return dictionarySize;
+    }
+
+    private void toPlain() {
+        values = new String[codes.length];
+        for (int row = 0; row < size; row++) {
+            values[row] = get(row);
+        }
+        codes = null;
+        dictionary = null;
+        dictionaryIndex = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int length = codes != null ? codes.length : values.length;
+        if (capacity <= length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, length + (length >> 1)));
+        if (codes != null) {
+            codes = Arrays.copyOf(codes, newCapacity);
+        } else {
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+}
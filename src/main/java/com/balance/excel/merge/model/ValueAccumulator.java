@@ -0,0 +1,97 @@
+package com.balance.excel.merge.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the distinct values of merged rows per kept row and column, in order of appearance.
+ * Values are compared as a whole, and each cell is joined only once when merging is finished.
+ * The key column is not merged, every kept row keeps its own key.
+ */
+class ValueAccumulator {
+    private final List<StringColumn> columns;
+    /**
+     * values of every kept row which got a different value merged, by row and column
+     */
+    private final List<Map<Integer, Set<String>>> valueSets;
+    private final int keyColumn;
+
+    /**
+     * @param keyColumn index of the column rows are matched by, -1 if there is none
+     */
+    ValueAccumulator(List<StringColumn> columns, int keyColumn) {
+        this.columns = columns;
+        this.keyColumn = keyColumn;
+        this.valueSets = new ArrayList<>(Collections.nCopies(columns.size(), null));
+    }
+
+    public void merge(int existRow, int row) {
+        for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++) {
+            if (columnIndex == keyColumn) {
+                continue;
+            }
+            StringColumn column = columns.get(columnIndex);
+            if (column.isDictionaryEncoded() && column.getCode(row) == column.getCode(existRow)) {
+                continue;
+            }
+            String newValue = column.get(row);
+            if (newValue == null) {
+                continue;
+            }
+
+            Map<Integer, Set<String>> columnSets = valueSets.get(columnIndex);
+            Set<String> values = columnSets == null ? null : columnSets.get(existRow);
+            if (values == null) {
+                String originValue = column.get(existRow);
+                if (newValue.equals(originValue)) {
+                    continue;
+                }
+                if (columnSets == null) {
+                    columnSets = new HashMap<>();
+                    valueSets.set(columnIndex, columnSets);
+                }
+                values = new LinkedHashSet<>();
+                if (originValue != null) {
+                    values.add(originValue);
+                }
+                columnSets.put(existRow, values);
+            }
+            values.add(newValue);
+        }
+    }
+
+    /**
+     * Writes the joined values back to the columns, empty values are left out.
+     */
+    public void join() {
+        for (int columnIndex = 0; columnIndex < valueSets.size(); columnIndex++) {
+            Map<Integer, Set<String>> columnSets = valueSets.get(columnIndex);
+            if (columnSets == null) {
+                continue;
+            }
+            StringColumn column = columns.get(columnIndex);
+            for (Map.Entry<Integer, Set<String>> entry : columnSets.entrySet()) {
+                column.set(entry.getKey(), joinValues(entry.getValue()));
+            }
+        }
+    }
+
+    static String joinValues(Set<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (value.isEmpty()) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(';');
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,255 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.SchemaRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads csv and tsv files as one sheet named after the file. The file is decoded in chunks from a FileChannel,
+ * and fields are cut from the decoded chars without a line reader in between.
+ * Fields may be quoted, a quoted field may contain delimiters, line breaks and doubled quotes.
+ * An empty field without quotes is a missing cell, like an empty cell of a workbook.
+ */
+public class CsvReader implements WorkbookReader {
+    private static final Charset GBK = Charset.forName("GBK");
+    static final int BUFFER_SIZE = 256 * 1024;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final SchemaRegistry schema;
+
+    public CsvReader() {
+        this(new SchemaRegistry());
+    }
+
+    public CsvReader(SchemaRegistry schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public List<ExcelSheetData> read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer sample = ByteBuffer.allocate(SAMPLE_SIZE);
+            while (sample.hasRemaining() && channel.read(sample) > 0) {
+                // fill the sample
+            }
+            sample.flip();
+            boolean hasBom = startsWith(sample, UTF8_BOM);
+            Charset charset = hasBom || isUtf8(sample) ? StandardCharsets.UTF_8 : GBK;
+            char delimiter = detectDelimiter(file, sample);
+
+            ExcelSheetData data = new ExcelSheetData(schema);
+            RowParser parser = new RowParser(data.rowHandler(file.getName(), sheetName(file)), delimiter);
+            channel.position(hasBom ? UTF8_BOM.length : 0);
+            decode(channel, charset, parser);
+            return Collections.singletonList(data);
+        }
+    }
+
+    private static void decode(FileChannel channel, Charset charset, RowParser parser) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        boolean endOfInput = false;
+        boolean reading = true;
+        while (reading) {
+            endOfInput = endOfInput || channel.read(bytes) < 0;
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            boolean finished = endOfInput && result.isUnderflow();
+            if (finished) {
+                decoder.flush(chars);
+            }
+            chars.flip();
+            reading = parser.parse(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()) && !finished;
+            chars.clear();
+        }
+        parser.finish();
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(buffer.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the sample is valid UTF-8, a character cut off at the end of the sample is ignored
+     */
+    private static boolean isUtf8(ByteBuffer sample) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate(sample.remaining());
+        CoderResult result = decoder.decode(sample.duplicate(), chars, false);
+        return !result.isError();
+    }
+
+    /**
+     * A tsv file is tab separated, otherwise the more frequent of tab and comma in the first line is the delimiter.
+     */
+    private static char detectDelimiter(File file, ByteBuffer sample) {
+        if (file.getName().toLowerCase().endsWith(".tsv")) {
+            return '\t';
+        }
+        int tabCount = 0;
+        int commaCount = 0;
+        for (int i = sample.position(); i < sample.limit(); i++) {
+            byte b = sample.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            if (b == '\t') {
+                tabCount++;
+            } else if (b == ',') {
+                commaCount++;
+            }
+        }
+        return tabCount > commaCount ? '\t' : ',';
+    }
+
+    private static String sheetName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Cuts rows and fields out of decoded chars, the state is kept between chunks.
+     */
+    private static class RowParser {
+        private final SheetRowHandler rowHandler;
+        private final char delimiter;
+        private final List<String> cells = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private String fieldValue;
+        private int rowIndex;
+        private boolean fieldQuoted;
+        private boolean inQuotes;
+        private boolean quotePending;
+        private boolean lastWasCarriageReturn;
+        private boolean stopped;
+
+        RowParser(SheetRowHandler rowHandler, char delimiter) {
+            this.rowHandler = rowHandler;
+            this.delimiter = delimiter;
+        }
+
+        /**
+         * @return false once the handler needs no more rows
+         */
+        boolean parse(char[] chars, int offset, int length) {
+            int end = offset + length;
+            int i = offset;
+            while (i < end && !stopped) {
+                char c = chars[i];
+                if (inQuotes) {
+                    if (quotePending) {
+                        quotePending = false;
+                        if (c == '"') {
+                            field.append('"');
+                            i++;
+                            continue;
+                        }
+                        inQuotes = false;
+                    } else if (c == '"') {
+                        quotePending = true;
+                        i++;
+                        continue;
+                    } else {
+                        int runEnd = i + 1;
+                        while (runEnd < end && chars[runEnd] != '"') {
+                            runEnd++;
+                        }
+                        field.append(chars, i, runEnd - i);
+                        i = runEnd;
+                        continue;
+                    }
+                }
+
+                if (c == '\n' && lastWasCarriageReturn) {
+                    lastWasCarriageReturn = false;
+                    i++;
+                    continue;
+                }
+                lastWasCarriageReturn = false;
+                if (c == delimiter) {
+                    endField();
+                } else if (c == '\n' || c == '\r') {
+                    lastWasCarriageReturn = c == '\r';
+                    endField();
+                    endRow();
+                } else if (c == '"' && field.length() == 0 && !fieldQuoted) {
+                    inQuotes = true;
+                    fieldQuoted = true;
+                } else {
+                    int runEnd = i + 1;
+                    while (runEnd < end && chars[runEnd] != delimiter && chars[runEnd] != '\n' && chars[runEnd] != '\r') {
+                        runEnd++;
+                    }
+                    if (runEnd < end && field.length() == 0 && !fieldQuoted) {
+                        // the whole field is in this chunk, cut it without the builder
+                        fieldValue = new String(chars, i, runEnd - i);
+                    } else {
+                        field.append(chars, i, runEnd - i);
+                    }
+                    i = runEnd;
+                    continue;
+                }
+                i++;
+            }
+            return !stopped;
+        }
+
+        /**
+         * Ends the last row if the file does not end with a line break.
+         */
+        void finish() {
+            if (!stopped && (field.length() > 0 || fieldQuoted || !cells.isEmpty())) {
+                endField();
+                endRow();
+            }
+        }
+
+        private void endField() {
+            if (fieldValue != null) {
+                cells.add(fieldValue);
+                fieldValue = null;
+            } else {
+                cells.add(field.length() == 0 && !fieldQuoted ? null : field.toString());
+                field.setLength(0);
+            }
+            fieldQuoted = false;
+            inQuotes = false;
+            quotePending = false;
+        }
+
+        private void endRow() {
+            stopped = !rowHandler.onRow(rowIndex++, cells);
+            cells.clear();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.SchemaRegistry;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the whole workbook with the user model and parses every sheet from it.
+ * The workbook is opened read only on the file and closed after parsing.
+ */
+public class DomWorkbookReader implements WorkbookReader {
+    private final WorkbookFormat format;
+    private final SchemaRegistry schema;
+
+    public DomWorkbookReader(WorkbookFormat format) {
+        this(format, new SchemaRegistry());
+    }
+
+    public DomWorkbookReader(WorkbookFormat format, SchemaRegistry schema) {
+        this.format = format;
+        this.schema = schema;
+    }
+
+    @Override
+    public List<ExcelSheetData> read(File file) throws IOException {
+        try (Workbook workbook = new WorkbookSource(file, format).openReadOnly()) {
+            List<ExcelSheetData> sheetDatas = new ArrayList<>();
+            for (int index = 0, count = workbook.getNumberOfSheets(); index < count; index++) {
+                sheetDatas.add(ExcelSheetData.parseFromSheet(workbook.getSheetAt(index), file.getName(), schema));
+            }
+            return sheetDatas;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.SchemaRegistry;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.NumberToTextConverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads BIFF8 xls files with the HSSF event model. Records are handled one by one and cells are gathered
+ * into the current row only, no HSSFSheet is built.
+ * Cell values are converted the same way as HSSFCell does for setCellType(CellType.STRING).
+ */
+public class HssfEventReader implements WorkbookReader {
+    private final SchemaRegistry schema;
+
+    public HssfEventReader() {
+        this(new SchemaRegistry());
+    }
+
+    public HssfEventReader(SchemaRegistry schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public List<ExcelSheetData> read(File file) throws IOException {
+        try (NPOIFSFileSystem fileSystem = new NPOIFSFileSystem(file, true)) {
+            WorkbookListener listener = new WorkbookListener(file.getName(), schema);
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(listener);
+            new HSSFEventFactory().processWorkbookEvents(request, fileSystem.getRoot());
+            return listener.sheetDatas;
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to read file:" + file.getAbsolutePath() + " with format HSSF.", e);
+        }
+    }
+
+    private static class WorkbookListener implements HSSFListener {
+        private final String fileName;
+        private final SchemaRegistry schema;
+        private final List<String> sheetNames = new ArrayList<>();
+        private final List<ExcelSheetData> sheetDatas = new ArrayList<>();
+        private final List<String> cells = new ArrayList<>();
+
+        private SSTRecord sst;
+        private int depth;
+        private int substreamCount;
+        private SheetRowHandler rowHandler;
+        private boolean sheetFinished;
+        private int currentRow = -1;
+        private int formulaRow = -1;
+        private int formulaColumn = -1;
+
+        WorkbookListener(String fileName, SchemaRegistry schema) {
+            this.fileName = fileName;
+            this.schema = schema;
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    startSubstream((BOFRecord) record);
+                    break;
+                case EOFRecord.sid:
+                    endSubstream();
+                    break;
+                case BoundSheetRecord.sid:
+                    sheetNames.add(((BoundSheetRecord) record).getSheetname());
+                    break;
+                case SSTRecord.sid:
+                    sst = (SSTRecord) record;
+                    break;
+                default:
+                    if (rowHandler != null && depth == 1 && !sheetFinished) {
+                        processCellRecord(record);
+                    }
+                    break;
+            }
+        }
+
+        private void startSubstream(BOFRecord bof) {
+            if (depth++ > 0) {
+                return;
+            }
+            // the first substream is the workbook globals, every following one belongs to a bound sheet
+            int sheetIndex = substreamCount++ - 1;
+            if (bof.getType() != BOFRecord.TYPE_WORKSHEET || sheetIndex < 0 || sheetIndex >= sheetNames.size()) {
+                return;
+            }
+            ExcelSheetData data = new ExcelSheetData(schema);
+            sheetDatas.add(data);
+            rowHandler = data.rowHandler(fileName, sheetNames.get(sheetIndex));
+            sheetFinished = false;
+            currentRow = -1;
+            cells.clear();
+        }
+
+        private void endSubstream() {
+            if (--depth > 0) {
+                return;
+            }
+            if (rowHandler != null) {
+                flushRow();
+            }
+            rowHandler = null;
+        }
+
+        private void processCellRecord(Record record) {
+            switch (record.getSid()) {
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord labelSST = (LabelSSTRecord) record;
+                    setCell(labelSST.getRow(), labelSST.getColumn(), sst.getString(labelSST.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    LabelRecord label = (LabelRecord) record;
+                    setCell(label.getRow(), label.getColumn(), label.getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    setCell(number.getRow(), number.getColumn(), NumberToTextConverter.toText(number.getValue()));
+                    break;
+                case RKRecord.sid:
+                    RKRecord rk = (RKRecord) record;
+                    setCell(rk.getRow(), rk.getColumn(), NumberToTextConverter.toText(rk.getRKNumber()));
+                    break;
+                case MulRKRecord.sid:
+                    MulRKRecord mulRK = (MulRKRecord) record;
+                    for (int i = 0; i < mulRK.getNumColumns(); i++) {
+                        setCell(mulRK.getRow(), mulRK.getFirstColumn() + i,
+                                NumberToTextConverter.toText(mulRK.getRKNumberAt(i)));
+                    }
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    String value = boolErr.isBoolean()
+                            ? (boolErr.getBooleanValue() ? "TRUE" : "FALSE")
+                            : FormulaError.forInt(boolErr.getErrorValue()).getString();
+                    setCell(boolErr.getRow(), boolErr.getColumn(), value);
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    if (formula.hasCachedResultString()) {
+                        // the cached text follows in a StringRecord
+                        formulaRow = formula.getRow();
+                        formulaColumn = formula.getColumn();
+                    } else {
+                        setCell(formula.getRow(), formula.getColumn(), NumberToTextConverter.toText(formula.getValue()));
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (formulaRow >= 0) {
+                        setCell(formulaRow, formulaColumn, ((StringRecord) record).getString());
+                        formulaRow = -1;
+                    }
+                    break;
+                case BlankRecord.sid:
+                    BlankRecord blank = (BlankRecord) record;
+                    setCell(blank.getRow(), blank.getColumn(), "");
+                    break;
+                case MulBlankRecord.sid:
+                    MulBlankRecord mulBlank = (MulBlankRecord) record;
+                    for (int column = mulBlank.getFirstColumn(); column <= mulBlank.getLastColumn(); column++) {
+                        setCell(mulBlank.getRow(), column, "");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void setCell(int row, int column, String value) {
+            if (sheetFinished) {
+                return;
+            }
+            if (row != currentRow) {
+                flushRow();
+                if (sheetFinished) {
+                    return;
+                }
+                currentRow = row;
+            }
+            while (cells.size() <= column) {
+                cells.add(null);
+            }
+            cells.set(column, value);
+        }
+
+        private void flushRow() {
+            if (currentRow >= 0 && !sheetFinished && !rowHandler.onRow(currentRow, cells)) {
+                sheetFinished = true;
+            }
+            cells.clear();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.SchemaRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the parsed sheets of input files on disk between runs. An entry is used only when the path, size,
+ * modified time and SHA-256 of the file are all the same as when it was written.
+ * Broken or outdated entries are treated as missing, the file is then parsed again.
+ */
+@Slf4j
+public class ParseCache {
+    private static final int MAGIC = 0x45584D43;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".cache";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final long maxBytes;
+    /**
+     * hashes computed by get for files whose entry turned out outdated, reused by the following put
+     */
+    private final Map<File, ContentHash> contentHashes = new ConcurrentHashMap<>();
+
+    public ParseCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cached sheets of the file in the registry schema, null if there are none for its current content
+     */
+    public List<ExcelSheetData> get(File file, SchemaRegistry schema) {
+        File entry = entryOf(file);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(entry), BUFFER_SIZE))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION
+                    || !input.readUTF().equals(file.getAbsolutePath())
+                    || input.readLong() != file.length()
+                    || input.readLong() != file.lastModified()) {
+                return null;
+            }
+            // size and modified time match, only now the whole file is hashed
+            byte[] contentHash = new byte[input.readInt()];
+            input.readFully(contentHash);
+            byte[] currentHash = contentHash(file);
+            if (!Arrays.equals(contentHash, currentHash)) {
+                contentHashes.put(file, new ContentHash(file.length(), file.lastModified(), currentHash));
+                return null;
+            }
+
+            int sheetCount = input.readInt();
+            List<ExcelSheetData> sheetDatas = new ArrayList<>(sheetCount);
+            for (int i = 0; i < sheetCount; i++) {
+                sheetDatas.add(ExcelSheetData.readFrom(input, schema));
+            }
+            entry.setLastModified(System.currentTimeMillis());
+            return sheetDatas;
+        } catch (IOException e) {
+            log.info("Ignore broken cache entry:{} of file:{}.", entry.getName(), file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    public void put(File file, List<ExcelSheetData> sheetDatas) {
+        File entry = entryOf(file);
+        File tempEntry = new File(directory, entry.getName() + ".tmp");
+        try {
+            Files.createDirectories(directory.toPath());
+            long size = file.length();
+            long lastModified = file.lastModified();
+            ContentHash hashed = contentHashes.remove(file);
+            byte[] contentHash = hashed != null && hashed.size == size && hashed.lastModified == lastModified
+                    ? hashed.hash : contentHash(file);
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempEntry), BUFFER_SIZE))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeUTF(file.getAbsolutePath());
+                output.writeLong(size);
+                output.writeLong(lastModified);
+                output.writeInt(contentHash.length);
+                output.write(contentHash);
+                output.writeInt(sheetDatas.size());
+                for (ExcelSheetData sheetData : sheetDatas) {
+                    sheetData.writeTo(output);
+                }
+            }
+            Files.move(tempEntry.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.info("Failed to cache file:{}.", file.getAbsolutePath(), e);
+            tempEntry.delete();
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidate() {
+        for (File entry : entries()) {
+            if (!entry.delete()) {
+                log.info("Failed to delete cache entry:{}.", entry.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits in maxBytes.
+     */
+    public void trim() {
+        List<File> entries = entries();
+        entries.sort(Comparator.comparingLong(File::lastModified).reversed());
+        long totalBytes = 0;
+        for (File entry : entries) {
+            totalBytes += entry.length();
+            if (totalBytes > maxBytes && !entry.delete()) {
+                log.info("Failed to delete cache entry:{}.", entry.getAbsolutePath());
+            }
+        }
+    }
+
+    private List<File> entries() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+    }
+
+    private File entryOf(File file) {
+        byte[] pathHash = digest().digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            name.append(String.format("%02x", pathHash[i]));
+        }
+        return new File(directory, name.append(SUFFIX).toString());
+    }
+
+    private static byte[] contentHash(File file) throws IOException {
+        MessageDigest digest = digest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = new FileInputStream(file)) {
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+    }
+
+    private static class ContentHash {
+        private final long size;
+        private final long lastModified;
+        private final byte[] hash;
+
+        ContentHash(long size, long lastModified, byte[] hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.balance.excel.merge.reader;
+
+import java.util.List;
+
+public interface SheetRowHandler {
+    /**
+     * Receives one row of a sheet.
+     * @param rowIndex zero based index of the row
+     * @param cells raw cell values indexed by column, null for a missing cell. The list may be reused by the caller.
+     * @return false if the rest of the sheet need not be read.
+     */
+    boolean onRow(int rowIndex, List<String> cells);
+}
@@ -0,0 +1,63 @@
+package com.balance.excel.merge.reader;
+
+public enum WorkbookFormat {
+    /** OLE2 compound document, BIFF8 xls. */
+    OLE2,
+    /** Zip package, OOXML xlsx. */
+    OOXML,
+    /** Delimited text, csv or tsv. */
+    CSV,
+    UNKNOWN;
+
+    private static final byte[] OLE2_MAGIC = {
+            (byte) 0xD0, (byte) 0xCF, (byte) 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, (byte) 0x1A, (byte) 0xE1};
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+
+    private static final String[] TEXT_EXTENSIONS = {".csv", ".tsv", ".txt"};
+
+    /**
+     * Detects the format from the first bytes of a file. A file is delimited text only if its name has a
+     * text extension, so other files without control bytes in the header, like xml, are not read as csv.
+     */
+    public static WorkbookFormat sniff(String fileName, byte[] header, int length) {
+        if (startsWith(header, length, OLE2_MAGIC)) {
+            return OLE2;
+        }
+        if (startsWith(header, length, ZIP_MAGIC)) {
+            return OOXML;
+        }
+        return hasTextExtension(fileName) && length > 0 && isText(header, length) ? CSV : UNKNOWN;
+    }
+
+    private static boolean hasTextExtension(String fileName) {
+        String name = fileName.toLowerCase();
+        for (String extension : TEXT_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isText(byte[] header, int length) {
+        for (int i = 0; i < length; i++) {
+            int b = header[i] & 0xFF;
+            if (b < 0x20 && b != '\t' && b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
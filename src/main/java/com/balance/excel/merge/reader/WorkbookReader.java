@@ -0,0 +1,14 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public interface WorkbookReader {
+    /**
+     * Reads every sheet of the file, one ExcelSheetData for each sheet in sheet order.
+     */
+    List<ExcelSheetData> read(File file) throws IOException;
+}
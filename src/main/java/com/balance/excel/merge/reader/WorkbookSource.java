@@ -0,0 +1,139 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.SchemaRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An input file together with its format. The format is detected once from the header bytes,
+ * and the file is then read only by the reader of that format.
+ */
+@Slf4j
+@Getter
+public class WorkbookSource {
+    private static final int HEADER_SIZE = 512;
+
+    private final File file;
+    private final WorkbookFormat format;
+
+    public WorkbookSource(File file, WorkbookFormat format) {
+        this.file = file;
+        this.format = format;
+    }
+
+    public static WorkbookSource of(File file) {
+        return new WorkbookSource(file, detectFormat(file));
+    }
+
+    private static WorkbookFormat detectFormat(File file) {
+        if (!file.isFile()) {
+            return WorkbookFormat.UNKNOWN;
+        }
+        byte[] header = new byte[HEADER_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int length = 0;
+            int count;
+            while (length < header.length && (count = inputStream.read(header, length, header.length - length)) > 0) {
+                length += count;
+            }
+            return WorkbookFormat.sniff(file.getName(), header, length);
+        } catch (IOException e) {
+            log.info("Failed to read header of file:{}.", file.getAbsolutePath());
+            return WorkbookFormat.UNKNOWN;
+        }
+    }
+
+    /**
+     * Opens the workbook directly on the file in read only mode. xls files are mapped through a
+     * read only NPOIFSFileSystem and xlsx files are read from the zip file, so the file content is
+     * paged in by the OS instead of being copied to the heap first.
+     * The workbook can't be written back, close it to release the file.
+     */
+    public Workbook openReadOnly() throws IOException {
+        switch (format) {
+            case OLE2:
+                NPOIFSFileSystem fileSystem = new NPOIFSFileSystem(file, true);
+                try {
+                    return new HSSFWorkbook(fileSystem.getRoot(), true);
+                } catch (IOException | RuntimeException e) {
+                    fileSystem.close();
+                    throw e;
+                }
+            case OOXML:
+                OPCPackage pkg;
+                try {
+                    pkg = OPCPackage.open(file, PackageAccess.READ);
+                } catch (InvalidFormatException e) {
+                    throw new IOException("Failed to open file:" + file.getAbsolutePath() + " with format XSSF.", e);
+                }
+                try {
+                    return new XSSFWorkbook(pkg);
+                } catch (IOException | RuntimeException e) {
+                    pkg.revert();
+                    throw e;
+                }
+            default:
+                throw new IOException("Unsupported format " + format + " of file:" + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @param schema registry of the sheets which are read
+     */
+    public WorkbookReader reader(boolean streaming, ExecutorService sheetExecutor, SchemaRegistry schema) {
+        switch (format) {
+            case OLE2:
+                return streaming ? new HssfEventReader(schema) : new DomWorkbookReader(format, schema);
+            case OOXML:
+                return streaming ? new XssfStreamingReader(sheetExecutor, schema) : new DomWorkbookReader(format, schema);
+            case CSV:
+                return new CsvReader(schema);
+            default:
+                return null;
+        }
+    }
+
+    public List<ExcelSheetData> readSheets(boolean streaming) {
+        return readSheets(streaming, null, new SchemaRegistry());
+    }
+
+    /**
+     * Reads all sheets of the file. An unreadable file is logged and results in no sheet.
+     * @param sheetExecutor parses the sheets of a streamed xlsx file in parallel when not null
+     * @param schema registry of the sheets, shared by all files of a merge
+     */
+    public List<ExcelSheetData> readSheets(boolean streaming, ExecutorService sheetExecutor, SchemaRegistry schema) {
+        WorkbookReader reader = reader(streaming, sheetExecutor, schema);
+        if (reader == null) {
+            log.info("Skip file:{} for unsupported format {}.", file.getAbsolutePath(), format);
+            return Collections.emptyList();
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<ExcelSheetData> sheetDatas = reader.read(file);
+            log.info("Read file:{} as {} in {} ms.", file.getName(), format, (System.nanoTime() - start) / 1000000);
+            return sheetDatas;
+        } catch (IOException | RuntimeException e) {
+            // POI reports broken content, like a zip which is no workbook, with runtime exceptions
+            log.info("Failed to read file:{} as {}.", file.getAbsolutePath(), format, e);
+            return Collections.emptyList();
+        }
+    }
+}
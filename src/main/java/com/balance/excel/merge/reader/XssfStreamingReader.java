@@ -0,0 +1,234 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.SchemaRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads xlsx files with the XSSF event model. Sheet xml is parsed with SAX and every row is passed to
+ * the SheetRowHandler as soon as it is complete, so only one row is kept in memory at a time.
+ * Cell values are the raw stored values, the same as reading a DOM cell with CellType.STRING.
+ */
+@Slf4j
+public class XssfStreamingReader implements WorkbookReader {
+    private final ExecutorService sheetExecutor;
+    private final SchemaRegistry schema;
+
+    public XssfStreamingReader() {
+        this(null);
+    }
+
+    public XssfStreamingReader(ExecutorService sheetExecutor) {
+        this(sheetExecutor, new SchemaRegistry());
+    }
+
+    /**
+     * @param sheetExecutor parses every sheet as its own task when not null. Each sheet is an independent
+     *                      xml part of the package, the results are still returned in sheet order.
+     */
+    public XssfStreamingReader(ExecutorService sheetExecutor, SchemaRegistry schema) {
+        this.sheetExecutor = sheetExecutor;
+        this.schema = schema;
+    }
+
+    @Override
+    public List<ExcelSheetData> read(File file) throws IOException {
+        OPCPackage pkg = null;
+        List<InputStream> sheetStreams = new ArrayList<>();
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+
+            List<ExcelSheetData> sheetDatas = new ArrayList<>();
+            if (sheetExecutor == null) {
+                while (sheets.hasNext()) {
+                    InputStream sheetStream = sheets.next();
+                    sheetDatas.add(readSheet(file.getName(), sheets.getSheetName(), sheetStream, strings));
+                }
+                return sheetDatas;
+            }
+
+            List<Future<ExcelSheetData>> sheetFutures = new ArrayList<>();
+            while (sheets.hasNext()) {
+                InputStream sheetStream = sheets.next();
+                sheetStreams.add(sheetStream);
+                String sheetName = sheets.getSheetName();
+                sheetFutures.add(sheetExecutor.submit(() -> readSheet(file.getName(), sheetName, sheetStream, strings)));
+            }
+            for (Future<ExcelSheetData> sheetFuture : sheetFutures) {
+                sheetDatas.add(sheetFuture.get());
+            }
+            return sheetDatas;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to read file:" + file.getAbsolutePath() + " with format XSSF.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read file:" + file.getAbsolutePath() + " with format XSSF.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted in reading file:" + file.getAbsolutePath());
+        } finally {
+            for (InputStream sheetStream : sheetStreams) {
+                sheetStream.close();
+            }
+            if (pkg != null) {
+                pkg.revert();
+            }
+        }
+    }
+
+    private ExcelSheetData readSheet(String fileName, String sheetName, InputStream sheetStream,
+                                     ReadOnlySharedStringsTable strings)
+            throws IOException, SAXException, ParserConfigurationException {
+        long start = System.nanoTime();
+        ExcelSheetData data = new ExcelSheetData(schema);
+        try (InputStream stream = sheetStream) {
+            readSheet(stream, strings, data.rowHandler(fileName, sheetName));
+        }
+        log.info("Read sheet:{} of file:{} in {} ms.", sheetName, fileName, (System.nanoTime() - start) / 1000000);
+        return data;
+    }
+
+    public static void readSheet(InputStream sheetStream, ReadOnlySharedStringsTable strings, SheetRowHandler rowHandler)
+            throws IOException, SAXException, ParserConfigurationException {
+        XMLReader parser = SAXHelper.newXMLReader();
+        parser.setContentHandler(new SheetHandler(strings, rowHandler));
+        try {
+            parser.parse(new InputSource(sheetStream));
+        } catch (StopReadingException e) {
+            // the row handler needs no more rows of this sheet
+        }
+    }
+
+    static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static class StopReadingException extends SAXException {
+    }
+
+    private static class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final SheetRowHandler rowHandler;
+
+        private final List<String> cells = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int rowIndex = -1;
+        private int column = -1;
+        private String cellType;
+        private boolean inText;
+        private boolean inInlineString;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, SheetRowHandler rowHandler) {
+            this.strings = strings;
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String rowReference = attributes.getValue("r");
+                    rowIndex = rowReference == null ? rowIndex + 1 : Integer.parseInt(rowReference) - 1;
+                    column = -1;
+                    cells.clear();
+                    break;
+                case "c":
+                    String cellReference = attributes.getValue("r");
+                    column = cellReference == null ? column + 1 : columnIndex(cellReference);
+                    cellType = attributes.getValue("t");
+                    text.setLength(0);
+                    break;
+                case "v":
+                    inText = true;
+                    break;
+                case "is":
+                    inInlineString = true;
+                    break;
+                case "t":
+                    inText = inInlineString;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inText = false;
+                    break;
+                case "is":
+                    inInlineString = false;
+                    break;
+                case "c":
+                    while (cells.size() <= column) {
+                        cells.add(null);
+                    }
+                    cells.set(column, cellValue());
+                    break;
+                case "row":
+                    if (!rowHandler.onRow(rowIndex, cells)) {
+                        throw new StopReadingException();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private String cellValue() {
+            if (text.length() == 0) {
+                return "";
+            }
+            String value = text.toString();
+            if ("s".equals(cellType)) {
+                return strings.getEntryAt(Integer.parseInt(value));
+            }
+            if ("b".equals(cellType)) {
+                return "1".equals(value) ? "TRUE" : "FALSE";
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.balance.excel.merge.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long to int with linear probing. Keys and values are kept in primitive arrays,
+ * so neither put nor get allocates per entry. Long.MIN_VALUE can't be used as key.
+ */
+public class LongIntHashMap {
+    public static final int NO_VALUE = -1;
+    private static final long FREE_KEY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @return the value of key, NO_VALUE if there is none
+     */
+    public int get(long key) {
+        int index = indexOf(key);
+        return keys[index] == FREE_KEY ? NO_VALUE : values[index];
+    }
+
+    public void put(long key, int value) {
+        if (key == FREE_KEY) {
+            throw new IllegalArgumentException("Long.MIN_VALUE can't be used as key.");
+        }
+        int index = indexOf(key);
+        if (keys[index] == FREE_KEY) {
+            keys[index] = key;
+            if (++size * 2 > keys.length) {
+                values[index] = value;
+                rehash(keys.length * 2);
+                return;
+            }
+        }
+        values[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int indexOf(long key) {
+        int index = hash(key) & mask;
+        while (keys[index] != FREE_KEY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE_KEY);
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+}
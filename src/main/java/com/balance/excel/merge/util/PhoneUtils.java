@@ -0,0 +1,31 @@
+package com.balance.excel.merge.util;
+
+public class PhoneUtils {
+    /** Digits are packed with their count, so leading zeros are kept apart: 5 bits of count, the rest value. */
+    private static final int MAX_PACKED_DIGITS = 17;
+
+    /**
+     * Packs a phone number into a long key. Spaces, '-', '(', ')' and '+' are ignored, so formatting variants
+     * like "138-0000-0000" and "13800000000" give the same key. No object is allocated.
+     * @return the key, or -1 if the value is not a phone number of at most 17 digits
+     */
+    public static long packPhone(String phone) {
+        if (phone == null) {
+            return -1;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        for (int i = 0, length = phone.length(); i < length; i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digitCount > MAX_PACKED_DIGITS) {
+                    return -1;
+                }
+                digits = digits * 10 + (c - '0');
+            } else if (c != ' ' && c != '-' && c != '(' && c != ')' && c != '+') {
+                return -1;
+            }
+        }
+        return digitCount == 0 ? -1 : (digits << 5) | digitCount;
+    }
+}
@@ -0,0 +1,133 @@
+package com.balance.excel.merge.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes rows as UTF-8 csv or tsv. Cells are encoded straight into one reusable buffer, which is written to
+ * the file channel when full. A cell is quoted only if it is empty or contains the delimiter, a quote or a line break.
+ */
+public class CsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    /** Bytes of one char in UTF-8 at most, a surrogate pair takes 4 bytes for 2 chars. */
+    private static final int MAX_CHAR_BYTES = 3;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final char delimiter;
+
+    /**
+     * @param bom start the file with the UTF-8 byte order mark, Excel needs it to open the file as UTF-8
+     * @param gzip compress the file with gzip
+     */
+    public CsvWriter(File file, char delimiter, boolean bom, boolean gzip) throws IOException {
+        this.channel = gzip
+                ? Channels.newChannel(new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE))
+                : FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.delimiter = delimiter;
+        if (bom) {
+            buffer.put(UTF8_BOM);
+        }
+    }
+
+    public void writeRow(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                ensureRemaining(1);
+                buffer.put((byte) delimiter);
+            }
+            if (values[i] != null) {
+                writeCell(values[i] instanceof CharSequence ? (CharSequence) values[i] : values[i].toString());
+            }
+        }
+        ensureRemaining(2);
+        buffer.put((byte) '\r').put((byte) '\n');
+    }
+
+    private void writeCell(CharSequence value) throws IOException {
+        boolean quoted = needsQuotes(value);
+        if (quoted) {
+            ensureRemaining(1);
+            buffer.put((byte) '"');
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            ensureRemaining(MAX_CHAR_BYTES + 1);
+            if (c < 0x80) {
+                if (c == '"' && quoted) {
+                    buffer.put((byte) '"');
+                }
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)))
+                        .put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)))
+                        .put((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+                        .put((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)))
+                        .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                        .put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        if (quoted) {
+            ensureRemaining(1);
+            buffer.put((byte) '"');
+        }
+    }
+
+    /**
+     * An empty value is quoted too, so it is read back as an empty cell instead of a missing one.
+     */
+    private boolean needsQuotes(CharSequence value) {
+        if (value.length() == 0) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensureRemaining(int byteCount) throws IOException {
+        if (buffer.remaining() < byteCount) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
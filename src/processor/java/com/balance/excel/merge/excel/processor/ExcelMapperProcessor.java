@@ -0,0 +1,411 @@
+package com.balance.excel.merge.excel.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an ExcelRowMapper for every class with ExcelColumn fields, so ExcelObjectDefinition.from needs no
+ * reflection for it. The definition is built from the same annotations ExcelObjectDefinition.fromAnnotations reads,
+ * and values are read and written by direct calls of the getters and setters.
+ * A class the mapper can't call, e.g. a private class or one without a constructor without parameters,
+ * is left to the reflective definition.
+ * The processor is built apart from the main classes and knows their types by name only, annotations are read
+ * from their mirrors. So it runs without the main classes and their dependencies on the processor path.
+ */
+@SupportedAnnotationTypes(ExcelMapperProcessor.EXCEL_COLUMN)
+public class ExcelMapperProcessor extends AbstractProcessor {
+    private static final String EXCEL_PACKAGE = "com.balance.excel.merge.excel.";
+    static final String EXCEL_COLUMN = EXCEL_PACKAGE + "ExcelColumn";
+    private static final String EXCEL_KEY_FIELD = EXCEL_PACKAGE + "ExcelKeyField";
+    private static final String EXCEL_OTHER_COLUMN = EXCEL_PACKAGE + "ExcelOtherColumn";
+    private static final String EXCEL_POST_ACTION = EXCEL_PACKAGE + "ExcelPostAction";
+    private static final String EXCEL_STYLE = EXCEL_PACKAGE + "ExcelStyle";
+    private static final String EXCEL_VALUE_VALIDATION = EXCEL_PACKAGE + "ExcelValueValidation";
+    private static final String EXCEL_ROW_MAPPER = EXCEL_PACKAGE + "ExcelRowMapper";
+    private static final String EXCEL_ROW_WRAPPER = EXCEL_PACKAGE + "ExcelRowWrapper";
+    private static final String EXCEL_OBJECT_DEFINITION = EXCEL_PACKAGE + "ExcelObjectDefinition";
+    private static final String EXCEL_COLUMN_DEFINITION = EXCEL_PACKAGE + "ExcelColumnDefinition";
+    private static final String EXCEL_CELL_STYLE = EXCEL_PACKAGE + "ExcelCellStyle";
+    private static final String EXCEL_VALUE_VALIDATOR = EXCEL_PACKAGE + "ExcelValueValidator";
+    private static final String EXCEL_VALUE_ACCESSOR = EXCEL_PACKAGE + "ExeclValueAccessor";
+    private static final String MESSAGE_RECORDER = "com.balance.excel.merge.util.MessageRecorder";
+    /**
+     * same as ExcelRowMapper.MAPPER_SUFFIX
+     */
+    private static final String MAPPER_SUFFIX = "ExcelMapper";
+    private static final List<String> CONSTRUCTOR_ANNOTATIONS = Arrays.asList(
+            "lombok.AllArgsConstructor", "lombok.RequiredArgsConstructor", "lombok.Builder", "lombok.Value");
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> dataTypes = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getEnclosingElement() instanceof TypeElement) {
+                    dataTypes.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement dataType : dataTypes) {
+            String reason = unmappableReason(dataType);
+            if (reason != null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "No ExcelRowMapper generated for " + dataType + ", " + reason + ".", dataType);
+                continue;
+            }
+            try {
+                generate(dataType);
+            } catch (IllegalArgumentException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), dataType);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write the ExcelRowMapper of " + dataType + ":" + e.getMessage(), dataType);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return why the generated mapper can't create or access the data type, null if it can
+     */
+    private String unmappableReason(TypeElement dataType) {
+        if (dataType.getKind() != ElementKind.CLASS || dataType.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "it is not a concrete class";
+        }
+        if (!dataType.getTypeParameters().isEmpty()) {
+            return "it has type parameters";
+        }
+        for (Element element = dataType; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement type = (TypeElement) element;
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                return "it is private";
+            }
+            if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+                return "it is an inner class";
+            }
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return "it is a local class";
+            }
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(dataType.getEnclosedElements())) {
+            if (annotation(method, EXCEL_POST_ACTION) != null && method.getModifiers().contains(Modifier.PRIVATE)) {
+                return "its ExcelPostAction method is private";
+            }
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(dataType.getEnclosedElements());
+        boolean noArgsConstructor = constructors.isEmpty() && !hasAnnotation(dataType, CONSTRUCTOR_ANNOTATIONS)
+                || hasAnnotation(dataType, Arrays.asList("lombok.NoArgsConstructor"));
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                noArgsConstructor = true;
+            }
+        }
+        return noArgsConstructor ? null : "it has no constructor without parameters";
+    }
+
+    private static boolean hasAnnotation(Element element, List<String> annotationNames) {
+        return element.getAnnotationMirrors().stream()
+                .anyMatch(mirror -> annotationNames.contains(mirror.getAnnotationType().toString()));
+    }
+
+    /**
+     * @return the mirror of the annotation on the element, null if the element has none
+     */
+    private static AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().toString().equals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the value of the annotation element, its default if it is not given. Enum constants are
+     *         VariableElements, other values are boxed primitives or Strings.
+     */
+    private Object annotationValue(AnnotationMirror annotation, String name) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalArgumentException("Unknown element " + name + " of " + annotation.getAnnotationType());
+    }
+
+    private String stringValue(Element element, String annotationName, String name) {
+        AnnotationMirror annotation = annotation(element, annotationName);
+        return annotation == null ? "" : (String) annotationValue(annotation, name);
+    }
+
+    private void generate(TypeElement dataType) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(dataType).getQualifiedName().toString();
+        // same name as ExcelRowMapper.mapperName gives
+        String mapperName = processingEnv.getElementUtils().getBinaryName(dataType).toString().replace('$', '_') + MAPPER_SUFFIX;
+        String mapperSimpleName = mapperName.substring(mapperName.lastIndexOf('.') + 1);
+        String typeName = dataType.getQualifiedName().toString();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(dataType.getEnclosedElements());
+
+        List<VariableElement> columns = new ArrayList<>();
+        VariableElement keyField = null;
+        VariableElement otherField = null;
+        for (VariableElement field : ElementFilter.fieldsIn(dataType.getEnclosedElements())) {
+            if (annotation(field, EXCEL_OTHER_COLUMN) != null) {
+                if (otherField != null) {
+                    throw new IllegalArgumentException("Unsupported multiple ExcelOtherColumn configured in one class:" + typeName);
+                }
+                otherField = field;
+                continue;
+            }
+            if (annotation(field, EXCEL_COLUMN) == null) {
+                continue;
+            }
+            columns.add(field);
+            if (annotation(field, EXCEL_KEY_FIELD) != null) {
+                if (keyField != null) {
+                    throw new IllegalArgumentException("Unsupported multiple ExcelKeyField configured in one class:" + typeName);
+                }
+                keyField = field;
+            }
+        }
+        ExecutableElement postAction = null;
+        for (ExecutableElement method : methods) {
+            if (annotation(method, EXCEL_POST_ACTION) != null) {
+                if (postAction != null) {
+                    throw new IllegalArgumentException("Unsupported multiple ExcelPostAction configured in one class:" + typeName);
+                }
+                postAction = method;
+            }
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append(packageName.isEmpty() ? "" : "package " + packageName + ";\n\n")
+                .append("/**\n * Generated by ").append(ExcelMapperProcessor.class.getSimpleName())
+                .append(" from the annotations of ").append(typeName).append(", do not edit.\n */\n")
+                .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(mapperSimpleName)
+                .append(" implements ").append(EXCEL_ROW_MAPPER).append("<").append(typeName).append("> {\n");
+
+        source.append("    @Override\n")
+                .append("    public ").append(EXCEL_OBJECT_DEFINITION).append("<").append(typeName).append("> getDefinition() {\n")
+                .append("        java.util.List<").append(EXCEL_COLUMN_DEFINITION).append("> fields = new java.util.ArrayList<>();\n");
+        for (VariableElement field : columns) {
+            AnnotationMirror excelColumn = annotation(field, EXCEL_COLUMN);
+            source.append("        fields.add(").append(EXCEL_COLUMN_DEFINITION).append(".builder()\n")
+                    .append("                .excelTitle(").append(literal((String) annotationValue(excelColumn, "value"))).append(")\n")
+                    .append("                .required(").append(annotationValue(excelColumn, "required")).append(")\n")
+                    .append("                .accessor(").append(accessor(typeName, field, valueType(field, methods), methods)).append(")\n")
+                    .append("                .cellStyle(").append(cellStyle(annotation(field, EXCEL_STYLE))).append(")\n")
+                    .append("                .validator(").append(validator(annotation(field, EXCEL_VALUE_VALIDATION))).append(")\n")
+                    .append("                .build());\n");
+        }
+        source.append("        return ").append(EXCEL_OBJECT_DEFINITION).append(".<").append(typeName).append(">builder()\n")
+                .append("                .dataType(").append(typeName).append(".class)\n")
+                .append("                .fields(fields)\n")
+                .append("                .keyField(").append(keyField == null ? "null" : "fields.get(" + columns.indexOf(keyField) + ")").append(")\n")
+                .append("                .otherValueAccessor(").append(otherField == null ? "null" : accessor(typeName, otherField, otherField.asType(), methods)).append(")\n")
+                .append("                .rowMapper(this)\n")
+                .append("                .build();\n")
+                .append("    }\n\n");
+
+        source.append("    @Override\n")
+                .append("    public ").append(typeName).append(" newInstance() {\n")
+                .append("        return new ").append(typeName).append("();\n")
+                .append("    }\n\n");
+
+        source.append("    @Override\n")
+                .append("    public void setValue(").append(typeName).append(" data, int fieldIndex, Object value) {\n")
+                .append("        switch (fieldIndex) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            VariableElement field = columns.get(i);
+            source.append("            case ").append(i).append(":\n")
+                    .append("                data.").append(setterName(field, methods)).append("((").append(castType(valueType(field, methods)))
+                    .append(") value);\n")
+                    .append("                return;\n");
+        }
+        source.append("            default:\n")
+                .append("                throw new IndexOutOfBoundsException(\"No field \" + fieldIndex + \" in ").append(typeName).append("\");\n")
+                .append("        }\n")
+                .append("    }\n\n");
+
+        source.append("    @Override\n")
+                .append("    public Object getValue(").append(typeName).append(" data, int fieldIndex) {\n")
+                .append("        switch (fieldIndex) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            VariableElement field = columns.get(i);
+            source.append("            case ").append(i).append(":\n")
+                    .append("                return data.").append(getterName(field, methods)).append("();\n");
+        }
+        source.append("            default:\n")
+                .append("                throw new IndexOutOfBoundsException(\"No field \" + fieldIndex + \" in ").append(typeName).append("\");\n")
+                .append("        }\n")
+                .append("    }\n\n");
+
+        source.append("    @Override\n")
+                .append("    public void runPostAction(").append(EXCEL_ROW_WRAPPER).append("<").append(typeName)
+                .append("> wrapper, ").append(MESSAGE_RECORDER).append(" messageRecorder) {\n");
+        if (postAction != null) {
+            source.append("        wrapper.getData().").append(postAction.getSimpleName()).append("(")
+                    .append(postActionArguments(postAction)).append(");\n");
+        }
+        source.append("    }\n")
+                .append("}\n");
+
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(mapperName, dataType);
+        try (Writer writer = sourceFile.openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+
+    /**
+     * @return the type of the values of a column, the return type of its getter like in ExcelObjectDefinition
+     */
+    private TypeMirror valueType(VariableElement field, List<ExecutableElement> methods) {
+        String getter = stringValue(field, EXCEL_COLUMN, "getter");
+        return getter.isEmpty() ? field.asType() : findMethod(getter, methods).getReturnType();
+    }
+
+    /**
+     * @return the getter named by ExcelColumn, otherwise the bean property getter of the field
+     */
+    private String getterName(VariableElement field, List<ExecutableElement> methods) {
+        String getter = stringValue(field, EXCEL_COLUMN, "getter");
+        if (!getter.isEmpty()) {
+            return findMethod(getter, methods).getSimpleName().toString();
+        }
+        String name = capitalize(field.getSimpleName().toString());
+        if (field.asType().getKind() == TypeKind.BOOLEAN) {
+            boolean declaresGet = methods.stream()
+                    .anyMatch(method -> method.getSimpleName().contentEquals("get" + name) && method.getParameters().isEmpty());
+            return declaresGet ? "get" + name : "is" + name;
+        }
+        return "get" + name;
+    }
+
+    private String setterName(VariableElement field, List<ExecutableElement> methods) {
+        String setter = stringValue(field, EXCEL_COLUMN, "setter");
+        if (!setter.isEmpty()) {
+            return findMethod(setter, methods).getSimpleName().toString();
+        }
+        return "set" + capitalize(field.getSimpleName().toString());
+    }
+
+    private static ExecutableElement findMethod(String methodName, List<ExecutableElement> methods) {
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(methodName)) {
+                if (method.getModifiers().contains(Modifier.PRIVATE)) {
+                    throw new IllegalArgumentException("Method of ExcelColumn can't be private:" + methodName);
+                }
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("Can't find method:" + methodName);
+    }
+
+    private String postActionArguments(ExecutableElement postAction) {
+        TypeMirror wrapperType = erasure(EXCEL_ROW_WRAPPER);
+        TypeMirror recorderType = erasure(MESSAGE_RECORDER);
+        List<String> arguments = new ArrayList<>();
+        for (VariableElement parameter : postAction.getParameters()) {
+            TypeMirror parameterType = processingEnv.getTypeUtils().erasure(parameter.asType());
+            if (processingEnv.getTypeUtils().isSameType(parameterType, wrapperType)) {
+                arguments.add("wrapper");
+            } else if (processingEnv.getTypeUtils().isSameType(parameterType, recorderType)) {
+                arguments.add("messageRecorder");
+            } else if (parameterType.getKind().isPrimitive()) {
+                throw new IllegalArgumentException("Unsupported parameter of ExcelPostAction:" + parameter);
+            } else {
+                arguments.add("(" + parameterType + ") null");
+            }
+        }
+        return String.join(", ", arguments);
+    }
+
+    private TypeMirror erasure(String typeName) {
+        return processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement(typeName).asType());
+    }
+
+    /**
+     * The accessor of the definition carries the same getter and setter Methods as the reflective one,
+     * for callers of the definition which don't go through the mapper.
+     */
+    private String accessor(String typeName, VariableElement field, TypeMirror valueType, List<ExecutableElement> methods) {
+        return EXCEL_VALUE_ACCESSOR + ".from(" + typeName + ".class, "
+                + literal(field.getSimpleName().toString()) + ", "
+                + processingEnv.getTypeUtils().erasure(valueType) + ".class, "
+                + literal(getterName(field, methods)) + ", " + literal(setterName(field, methods)) + ")";
+    }
+
+    private String castType(TypeMirror valueType) {
+        if (valueType.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) valueType).getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(valueType).toString();
+    }
+
+    private String cellStyle(AnnotationMirror style) {
+        if (style == null) {
+            return "null";
+        }
+        return EXCEL_CELL_STYLE + ".builder()"
+                + ".dataFormat(" + literal((String) annotationValue(style, "dataFormat")) + ")"
+                + ".fillForegroundColor((short) " + annotationValue(style, "fillForegroundColor") + ")"
+                + ".fillPattern(" + enumConstant(annotationValue(style, "fillPattern")) + ")"
+                + ".alignment(" + enumConstant(annotationValue(style, "alignment")) + ")"
+                + ".borderStyle(" + enumConstant(annotationValue(style, "borderStyle")) + ")"
+                + ".build()";
+    }
+
+    private String validator(AnnotationMirror valueValidation) {
+        if (valueValidation == null) {
+            return "null";
+        }
+        return "new " + EXCEL_VALUE_VALIDATOR + "(" + annotationValue(valueValidation, "notEmpty") + ")";
+    }
+
+    private static String enumConstant(Object value) {
+        VariableElement constant = (VariableElement) value;
+        return ((TypeElement) constant.getEnclosingElement()).getQualifiedName() + "." + constant.getSimpleName();
+    }
+
+    private String literal(String value) {
+        return processingEnv.getElementUtils().getConstantExpression(value);
+    }
+
+    private static String capitalize(String name) {
+        return name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
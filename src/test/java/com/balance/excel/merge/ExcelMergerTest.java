@@ -0,0 +1,158 @@
+package com.balance.excel.merge;
+
+import com.balance.excel.merge.excel.SheetAgency;
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.model.IncrementalDeduplicator;
+import com.balance.excel.merge.reader.WorkbookSource;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExcelMergerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void documentsWhichAreNoWorkbookAreSkipped() throws IOException {
+        File inputDir = temporaryFolder.newFolder("input");
+        writeWorkbook(new File(inputDir, "a.xlsx"), Arrays.asList(
+                Arrays.asList("学生姓名", "家长电话"),
+                Arrays.asList("张三", "13800000001"),
+                Arrays.asList("李四", "13800000002")));
+        writeDocument(new File(inputDir, "broken.xlsx"));
+        writeDocument(new File(inputDir, "report.docx"));
+
+        for (boolean streaming : new boolean[]{true, false}) {
+            File summaryFile = new File(temporaryFolder.getRoot(), "summary-" + streaming + ".xlsx");
+            MergeOptions options = MergeOptions.builder()
+                    .streaming(streaming)
+                    .build();
+            new ExcelMerger(inputDir.listFiles(), summaryFile, options).merge();
+
+            assertEquals(Arrays.asList(
+                    Arrays.asList("学生姓名", "家长电话", ExcelSheetData.EXCEL_LOCATION),
+                    Arrays.asList("张三", "13800000001", "a.xlsx/Sheet1"),
+                    Arrays.asList("李四", "13800000002", "a.xlsx/Sheet1")),
+                    readSummary(summaryFile));
+        }
+    }
+
+    /**
+     * The watch mode keeps the summary with IncrementalDeduplicator, it has to give the same summary as merging
+     * the files in order of their names. A sheet with titles but no rows adds no titles in both.
+     */
+    @Test
+    public void incrementalMergeMatchesMerge() throws IOException {
+        File inputDir = temporaryFolder.newFolder("input");
+        writeWorkbook(new File(inputDir, "a.xlsx"), Arrays.asList(
+                Arrays.asList("学生姓名", "家长电话", "班级"),
+                Arrays.asList("张三", "13800000001", "一班"),
+                Arrays.asList("李四", "13800000002", "一班"),
+                Arrays.asList("张三丰", "138-0000-0001", "二班")));
+        writeWorkbook(new File(inputDir, "b.xlsx"), Arrays.asList(
+                Arrays.asList("学号", "学生姓名", "家长电话")));
+        writeWorkbook(new File(inputDir, "c.xlsx"), Arrays.asList(
+                Arrays.asList("家长电话", "学生姓名", "住校"),
+                Arrays.asList("(138) 0000 0002", "李四", "是"),
+                Arrays.asList("13800000003", "王五", "否")));
+        File[] inputFiles = inputDir.listFiles();
+        Arrays.sort(inputFiles);
+
+        for (boolean accumulateValues : new boolean[]{false, true}) {
+            MergeOptions options = MergeOptions.builder()
+                    .accumulateDistinctValues(accumulateValues)
+                    .build();
+            File summaryFile = new File(temporaryFolder.getRoot(), "summary-" + accumulateValues + ".xlsx");
+            ExcelMerger merger = new ExcelMerger(inputFiles, summaryFile, options);
+            merger.merge();
+
+            IncrementalDeduplicator deduplicator = new IncrementalDeduplicator(accumulateValues);
+            for (File file : inputFiles) {
+                deduplicator.put(file.getAbsolutePath(), WorkbookSource.of(file).readSheets(true));
+            }
+            File incrementalFile = new File(temporaryFolder.getRoot(), "incremental-" + accumulateValues + ".xlsx");
+            assertTrue(merger.saveSummary(deduplicator, incrementalFile));
+
+            List<List<String>> summary = readSummary(summaryFile);
+            assertEquals(Arrays.asList("学生姓名", "家长电话", "班级", "住校", ExcelSheetData.EXCEL_LOCATION),
+                    summary.get(0));
+            assertEquals(4, summary.size());
+            assertEquals(summary, readSummary(incrementalFile));
+        }
+    }
+
+    static void writeWorkbook(File file, List<List<String>> rows) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook(); OutputStream output = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Sheet1");
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = sheet.createRow(i);
+                List<String> values = rows.get(i);
+                for (int column = 0; column < values.size(); column++) {
+                    if (values.get(column) != null) {
+                        row.createCell(column).setCellValue(values.get(column));
+                    }
+                }
+            }
+            workbook.write(output);
+        }
+    }
+
+    /**
+     * Writes the parts of a minimal word document, it is a valid OOXML package but has no workbook.
+     */
+    public static void writeDocument(File file) throws IOException {
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(file))) {
+            putEntry(output, "[Content_Types].xml", "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/word/document.xml\" ContentType=\""
+                    + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/></Types>");
+            putEntry(output, "_rels/.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Target=\"word/document.xml\" Type=\""
+                    + "http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\"/></Relationships>");
+            putEntry(output, "word/document.xml", "<w:document xmlns:w=\""
+                    + "http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body/></w:document>");
+        }
+    }
+
+    private static void putEntry(ZipOutputStream output, String name, String content) throws IOException {
+        output.putNextEntry(new ZipEntry(name));
+        output.write(content.getBytes(StandardCharsets.UTF_8));
+        output.closeEntry();
+    }
+
+    static List<List<String>> readSummary(File summaryFile) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (Workbook workbook = new XSSFWorkbook(summaryFile.getPath())) {
+            Sheet sheet = workbook.getSheet("summary");
+            for (int i = 0; i <= sheet.getLastRowNum(); i++) {
+                Row row = sheet.getRow(i);
+                List<String> values = new ArrayList<>();
+                for (int column = 0; column < row.getLastCellNum(); column++) {
+                    values.add(row.getCell(column) == null ? null : SheetAgency.cellText(row.getCell(column)));
+                }
+                rows.add(values);
+            }
+        }
+        return rows;
+    }
+}
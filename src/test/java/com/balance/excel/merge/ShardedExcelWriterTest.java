@@ -0,0 +1,171 @@
+package com.balance.excel.merge;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.balance.excel.merge.excel.SheetAgency;
+import com.balance.excel.merge.model.ExcelSheetData;
+import com.balance.excel.merge.reader.SheetRowHandler;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedExcelWriterTest {
+    private static final List<String> TITLES = Arrays.asList("学生姓名", "家长电话");
+    private static final int SHARD_ROW_COUNT = 3;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sheetsOfOneFile() throws IOException {
+        File summaryFile = new File(temporaryFolder.getRoot(), "summary.xlsx");
+
+        assertTrue(writer(false).write(data(7), TITLES, summaryFile));
+
+        try (Workbook workbook = new XSSFWorkbook(summaryFile.getPath())) {
+            assertEquals(3, workbook.getNumberOfSheets());
+            assertSheet(workbook.getSheet("summary"), 1, 3);
+            assertSheet(workbook.getSheet("summary-2"), 4, 3);
+            assertSheet(workbook.getSheet("summary-3"), 7, 1);
+        }
+        assertFalse(ShardedExcelWriter.shardFile(summaryFile, 2).exists());
+        assertManifest(summaryFile,
+                "summary.xlsx/summary/1/3", "summary.xlsx/summary-2/4/3", "summary.xlsx/summary-3/7/1");
+        assertEquals(Arrays.asList("summary.xlsx", "summary.xlsx.manifest.json"), fileNames());
+    }
+
+    @Test
+    public void filesOfShards() throws IOException {
+        File summaryFile = new File(temporaryFolder.getRoot(), "summary.xlsx");
+
+        assertTrue(writer(true).write(data(7), TITLES, summaryFile));
+
+        assertFile(summaryFile, 1, 3);
+        assertFile(ShardedExcelWriter.shardFile(summaryFile, 2), 4, 3);
+        assertFile(ShardedExcelWriter.shardFile(summaryFile, 3), 7, 1);
+        assertManifest(summaryFile,
+                "summary.xlsx/summary/1/3", "summary-2.xlsx/summary/4/3", "summary-3.xlsx/summary/7/1");
+        assertEquals(Arrays.asList("summary-2.xlsx", "summary-3.xlsx", "summary.xlsx", "summary.xlsx.manifest.json"),
+                fileNames());
+    }
+
+    /**
+     * A full last shard is not followed by an empty one.
+     */
+    @Test
+    public void rowsFillLastShard() throws IOException {
+        File summaryFile = new File(temporaryFolder.getRoot(), "summary.xlsx");
+
+        assertTrue(writer(true).write(data(6), TITLES, summaryFile));
+
+        assertFile(summaryFile, 1, 3);
+        assertFile(ShardedExcelWriter.shardFile(summaryFile, 2), 4, 3);
+        assertManifest(summaryFile, "summary.xlsx/summary/1/3", "summary-2.xlsx/summary/4/3");
+    }
+
+    @Test
+    public void singleShardReplacesEarlierShards() throws IOException {
+        File summaryFile = new File(temporaryFolder.getRoot(), "summary.xlsx");
+        assertTrue(writer(true).write(data(7), TITLES, summaryFile));
+        File other = temporaryFolder.newFile("summary-2.xlsx.bak");
+
+        assertTrue(writer(true).write(data(2), TITLES, summaryFile));
+
+        assertFile(summaryFile, 1, 2);
+        assertTrue(other.exists());
+        assertEquals(Arrays.asList("summary-2.xlsx.bak", "summary.xlsx"), fileNames());
+    }
+
+    @Test
+    public void noRowsGiveTitlesOnly() throws IOException {
+        File summaryFile = new File(temporaryFolder.getRoot(), "summary.xlsx");
+
+        assertTrue(writer(true).write(data(0), TITLES, summaryFile));
+
+        assertFile(summaryFile, 1, 0);
+        assertEquals(Arrays.asList("summary.xlsx"), fileNames());
+    }
+
+    private static ShardedExcelWriter writer(boolean shardFiles) {
+        return new ShardedExcelWriter(() -> new SXSSFWorkbook(2), SHARD_ROW_COUNT, shardFiles);
+    }
+
+    private static void assertFile(File file, int firstRow, int rowCount) throws IOException {
+        try (Workbook workbook = new XSSFWorkbook(file.getPath())) {
+            assertEquals(1, workbook.getNumberOfSheets());
+            assertSheet(workbook.getSheet("summary"), firstRow, rowCount);
+        }
+    }
+
+    /**
+     * Checks the title row and the rows firstRow to firstRow + rowCount - 1 of the merged data.
+     */
+    private static void assertSheet(Sheet sheet, int firstRow, int rowCount) {
+        assertEquals(rowCount, sheet.getLastRowNum());
+        assertEquals(TITLES, values(sheet.getRow(0)));
+        for (int i = 1; i <= rowCount; i++) {
+            int row = firstRow + i - 1;
+            assertEquals(Arrays.asList("学生" + row, "1380000000" + row), values(sheet.getRow(i)));
+        }
+    }
+
+    private static List<String> values(Row row) {
+        List<String> values = new ArrayList<>();
+        for (int column = 0; column < row.getLastCellNum(); column++) {
+            values.add(SheetAgency.cellText(row.getCell(column)));
+        }
+        return values;
+    }
+
+    /**
+     * @param entries every shard as file/sheet/firstRow/rowCount
+     */
+    private static void assertManifest(File summaryFile, String... entries) throws IOException {
+        File manifestFile = new File(summaryFile.getParentFile(), summaryFile.getName() + ".manifest.json");
+        JSONArray manifest = JSON.parseArray(new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8));
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < manifest.size(); i++) {
+            JSONObject entry = manifest.getJSONObject(i);
+            actual.add(entry.getString("file") + "/" + entry.getString("sheet") + "/"
+                    + entry.getLongValue("firstRow") + "/" + entry.getLongValue("rowCount"));
+        }
+        assertEquals(Arrays.asList(entries), actual);
+    }
+
+    private List<String> fileNames() {
+        String[] names = temporaryFolder.getRoot().list();
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Rows of distinct names and phones, numbered from 1.
+     */
+    private static ExcelSheetData data(int rowCount) {
+        ExcelSheetData data = new ExcelSheetData();
+        SheetRowHandler rowHandler = data.rowHandler("a.xlsx", "Sheet1");
+        rowHandler.onRow(0, TITLES);
+        for (int row = 1; row <= rowCount; row++) {
+            rowHandler.onRow(row, Arrays.asList("学生" + row, "1380000000" + row));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,80 @@
+package com.balance.excel.merge.excel;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ExcelRowIteratorTest {
+
+    /**
+     * A blank cell reads as 0 into a primitive key, so it doesn't end the rows like a missing key of a reference type.
+     */
+    @Test
+    public void blankCellOfPrimitiveKeyReadsDefault() throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("一班");
+            Row title = sheet.createRow(0);
+            title.createCell(0).setCellValue("学号");
+            title.createCell(1).setCellValue("住校");
+            title.createCell(2).setCellValue("学生姓名");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellValue(true);
+            row.createCell(2).setCellValue("张三");
+            row = sheet.createRow(2);
+            row.createCell(0);
+            row.createCell(1);
+            row.createCell(2).setCellValue("李四");
+            row = sheet.createRow(3);
+            row.createCell(0).setCellValue(3);
+            row.createCell(2).setCellValue("王五");
+
+            List<Pupil> pupils = new ArrayList<>();
+            ExcelRowIterator.from(sheet, Pupil.class).forEachRemaining(wrapper -> pupils.add(wrapper.getData()));
+
+            assertEquals(3, pupils.size());
+            assertEquals(1, pupils.get(0).getNumber());
+            assertEquals(0, pupils.get(1).getNumber());
+            assertEquals("李四", pupils.get(1).getName());
+            assertFalse(pupils.get(1).isBoarder());
+            assertEquals(3, pupils.get(2).getNumber());
+        }
+    }
+
+    @Test
+    public void blankCellIsNullOnlyForReferenceTypes() throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Row row = workbook.createSheet().createRow(0);
+            row.createCell(0);
+
+            assertEquals(Integer.valueOf(0), SheetAgency.columnReader(int.class).read(row.getCell(0)));
+            assertNull(SheetAgency.columnReader(Integer.class).read(row.getCell(0)));
+            assertEquals(Boolean.FALSE, SheetAgency.columnReader(boolean.class).read(row.getCell(0)));
+            assertNull(SheetAgency.columnReader(Boolean.class).read(row.getCell(0)));
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Pupil {
+        @ExcelKeyField
+        @ExcelColumn("学号")
+        private int number;
+        @ExcelColumn(value = "住校", required = false)
+        private boolean boarder;
+        @ExcelColumn("学生姓名")
+        private String name;
+    }
+}
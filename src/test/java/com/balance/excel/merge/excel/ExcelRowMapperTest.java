@@ -0,0 +1,126 @@
+package com.balance.excel.merge.excel;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the mapper ExcelMapperProcessor generates for Pupil when the test sources are compiled.
+ */
+public class ExcelRowMapperTest {
+
+    @Test
+    public void generatedMapperIsUsed() {
+        ExcelObjectDefinition<Pupil> definition = ExcelObjectDefinition.from(Pupil.class);
+
+        assertNotNull("no ExcelRowMapper generated for Pupil", definition.getRowMapper());
+        assertEquals(ExcelRowMapper.mapperName(Pupil.class.getName()), definition.getRowMapper().getClass().getName());
+        assertSame(definition, ExcelObjectDefinition.from(Pupil.class));
+        assertNull(ExcelObjectDefinition.fromAnnotations(Pupil.class).getRowMapper());
+    }
+
+    @Test
+    public void generatedDefinitionMatchesAnnotations() {
+        ExcelObjectDefinition<Pupil> generated = ExcelObjectDefinition.from(Pupil.class);
+        ExcelObjectDefinition<Pupil> reflective = ExcelObjectDefinition.fromAnnotations(Pupil.class);
+
+        assertEquals(reflective.getFields().size(), generated.getFields().size());
+        for (int i = 0; i < reflective.getFields().size(); i++) {
+            ExcelColumnDefinition expected = reflective.getFields().get(i);
+            ExcelColumnDefinition actual = generated.getFields().get(i);
+            assertEquals(expected.getExcelTitle(), actual.getExcelTitle());
+            assertEquals(expected.isRequired(), actual.isRequired());
+            assertEquals(String.valueOf(expected.getCellStyle()), String.valueOf(actual.getCellStyle()));
+            assertEquals(String.valueOf(expected.getValidator()), String.valueOf(actual.getValidator()));
+            assertSameAccessor(expected.getAccessor(), actual.getAccessor());
+        }
+        assertEquals(reflective.getKeyField().getExcelTitle(), generated.getKeyField().getExcelTitle());
+        assertSameAccessor(reflective.getOtherValueAccessor(), generated.getOtherValueAccessor());
+        assertEquals(reflective.getRequiredTitles(), generated.getRequiredTitles());
+    }
+
+    @Test
+    public void accessorsOfGeneratedDefinitionReadAndWrite() throws Exception {
+        ExcelObjectDefinition<Pupil> definition = ExcelObjectDefinition.from(Pupil.class);
+        Pupil pupil = new Pupil();
+        List<ExcelColumnDefinition> fields = definition.getFields();
+        Object[] values = {"张三", "13800000000", 3, true, "备注"};
+        for (int i = 0; i < fields.size(); i++) {
+            fields.get(i).getAccessor().getSetMethod().invoke(pupil, values[i]);
+        }
+
+        assertEquals("张三", pupil.getName());
+        assertEquals(3, pupil.getGrade());
+        assertTrue(pupil.isBoarder());
+        for (int i = 0; i < fields.size(); i++) {
+            assertEquals(values[i], fields.get(i).getAccessor().getValue(pupil));
+        }
+    }
+
+    @Test
+    public void bindThroughGeneratedMapper() {
+        ExcelObjectDefinition<Pupil> definition = ExcelObjectDefinition.from(Pupil.class);
+        ExcelRowBinder<Pupil> binder = definition.getBinder();
+        Pupil pupil = binder.newInstance();
+        List<ExcelColumnDefinition> fields = definition.getFields();
+        Object[] values = {"李四", "13900000000", 5, false, null};
+        for (int i = 0; i < fields.size(); i++) {
+            binder.setter(fields.get(i)).accept(pupil, values[i]);
+        }
+
+        assertEquals("13900000000", pupil.getPhone());
+        assertFalse(pupil.isBoarder());
+        for (int i = 0; i < fields.size(); i++) {
+            assertEquals(values[i], binder.getter(fields.get(i)).apply(pupil));
+        }
+    }
+
+    private static void assertSameAccessor(ExeclValueAccessor expected, ExeclValueAccessor actual) {
+        assertEquals(expected.getFieldName(), actual.getFieldName());
+        assertEquals(expected.getDataType(), actual.getDataType());
+        assertEquals(expected.getGetMethod(), actual.getGetMethod());
+        assertEquals(expected.getSetMethod(), actual.getSetMethod());
+    }
+
+    @Getter
+    @Setter
+    public static class Pupil {
+        @ExcelKeyField
+        @ExcelColumn("学生姓名")
+        private String name;
+        @ExcelColumn("家长电话")
+        @ExcelStyle(dataFormat = "@", alignment = HorizontalAlignment.CENTER)
+        @ExcelValueValidation(notEmpty = true)
+        private String phone;
+        @ExcelColumn(value = "年级", required = false)
+        private int grade;
+        @ExcelColumn(value = "住校", required = false)
+        private boolean boarder;
+        @ExcelColumn(value = "备注", required = false, getter = "readRemark", setter = "writeRemark")
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private String remark;
+        @ExcelOtherColumn
+        private Map<String, String> otherValues;
+
+        public String readRemark() {
+            return remark;
+        }
+
+        public void writeRemark(String remark) {
+            this.remark = remark;
+        }
+    }
+}
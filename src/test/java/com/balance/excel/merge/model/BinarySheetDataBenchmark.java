@@ -0,0 +1,66 @@
+package com.balance.excel.merge.model;
+
+import com.balance.excel.merge.reader.WorkbookSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares reading an xlsx or xls file through POI with writing and reading its sheets as BinarySheetData.
+ * Run the main method with the path of a workbook.
+ */
+public class BinarySheetDataBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("BinarySheetDataBenchmark workbook.xlsx");
+            return;
+        }
+        File workbook = new File(args[0]);
+        List<ExcelSheetData> sheetDatas = new ArrayList<>();
+        List<File> binaryFiles = new ArrayList<>();
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                sheetDatas = WorkbookSource.of(workbook).readSheets(true);
+                long parseNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long binaryBytes = 0;
+                for (int i = 0; i < sheetDatas.size(); i++) {
+                    if (binaryFiles.size() <= i) {
+                        binaryFiles.add(File.createTempFile("sheet-data", ".bin"));
+                    }
+                    BinarySheetData.write(sheetDatas.get(i), binaryFiles.get(i));
+                    binaryBytes += binaryFiles.get(i).length();
+                }
+                long writeNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int rowCount = 0;
+                for (int i = 0; i < sheetDatas.size(); i++) {
+                    rowCount += BinarySheetData.map(binaryFiles.get(i)).toSheetData().getRowCount();
+                }
+                long readNanos = System.nanoTime() - start;
+
+                System.out.println("rows:" + rowCount
+                        + ", xlsx:" + workbook.length() / 1024 + " KB parse " + parseNanos / 1000000 + " ms"
+                        + ", binary:" + binaryBytes / 1024 + " KB write " + writeNanos / 1000000 + " ms"
+                        + " (" + megabytesPerSecond(binaryBytes, writeNanos) + " MB/s)"
+                        + ", read " + readNanos / 1000000 + " ms"
+                        + " (" + megabytesPerSecond(binaryBytes, readNanos) + " MB/s)");
+            }
+        } finally {
+            for (File binaryFile : binaryFiles) {
+                binaryFile.delete();
+            }
+        }
+    }
+
+    private static long megabytesPerSecond(long bytes, long nanos) {
+        return nanos == 0 ? 0 : bytes * 1000000000L / nanos / (1024 * 1024);
+    }
+}
@@ -0,0 +1,155 @@
+package com.balance.excel.merge.model;
+
+import com.balance.excel.merge.reader.SheetRowHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BinarySheetDataTest {
+    /** more distinct values than a varint of one or two bytes holds */
+    private static final int ROW_COUNT = 20_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readWrittenBlocks() throws IOException {
+        ExcelSheetData first = sheet("a.xlsx", ROW_COUNT);
+        ExcelSheetData second = sheet("b.xlsx", 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            first.writeTo(output);
+            second.writeTo(output);
+        }
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSameData(first, BinarySheetData.read(input));
+            assertSameData(second, BinarySheetData.read(input));
+        }
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSameData(first, ExcelSheetData.readFrom(input));
+            assertSameData(second, ExcelSheetData.readFrom(input));
+        }
+    }
+
+    @Test
+    public void wrapBlockInBuffer() throws IOException {
+        ExcelSheetData first = sheet("a.xlsx", ROW_COUNT);
+        ExcelSheetData second = sheet("b.xlsx", 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeLong(-1);
+            first.writeTo(output);
+            second.writeTo(output);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.position(8);
+        BinarySheetData firstBlock = BinarySheetData.wrap(buffer);
+        assertSameData(first, firstBlock);
+        buffer.position(8 + firstBlock.getLength());
+        assertSameData(second, BinarySheetData.wrap(buffer));
+    }
+
+    @Test
+    public void mapWrittenFile() throws IOException {
+        ExcelSheetData data = sheet("a.xlsx", ROW_COUNT);
+        File file = temporaryFolder.newFile("a.bin");
+        BinarySheetData.write(data, file);
+
+        BinarySheetData binaryData = BinarySheetData.map(file);
+        assertEquals(file.length(), binaryData.getLength());
+        assertSameData(data, binaryData);
+    }
+
+    @Test
+    public void titlesExcludeExcelLocation() throws IOException {
+        ExcelSheetData data = sheet("a.xlsx", 3);
+        BinarySheetData binaryData = BinarySheetData.wrap(ByteBuffer.wrap(toBytes(data)));
+
+        assertEquals(Arrays.asList("学生姓名", "学号", "家长电话", ExcelSheetData.EXCEL_LOCATION),
+                binaryData.getColumnNames());
+        assertEquals(Arrays.asList("学生姓名", "学号", "家长电话"), binaryData.getTitles());
+        assertEquals(data.getTitles(), binaryData.getTitles());
+        assertEquals("a.xlsx/Sheet1", binaryData.getValue(0, 3));
+    }
+
+    @Test
+    public void missingValuesAreNull() throws IOException {
+        ExcelSheetData data = sheet("a.xlsx", 3);
+        BinarySheetData binaryData = BinarySheetData.wrap(ByteBuffer.wrap(toBytes(data)));
+
+        assertNull(binaryData.getValue(1, 1));
+        assertNull(binaryData.getValue(2, 2));
+        assertNull(binaryData.getValue(0, -1));
+        assertNull(binaryData.getValue(0, 4));
+        List<String[]> rows = new ArrayList<>();
+        binaryData.forEachRow(Arrays.asList("家长电话", "班级"), values -> rows.add(values.clone()));
+        assertEquals(3, rows.size());
+        assertEquals(Arrays.asList("13800000001", null), Arrays.asList(rows.get(0)));
+        assertEquals(Arrays.asList(null, null), Arrays.asList(rows.get(2)));
+    }
+
+    private static void assertSameData(ExcelSheetData expected, BinarySheetData actual) {
+        assertEquals(expected.getColumnNames(), actual.getColumnNames());
+        assertEquals(expected.getTitles(), actual.getTitles());
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(rows(expected, expected.getColumnNames()), rows(actual, expected.getColumnNames()));
+        assertSameData(expected, actual.toSheetData());
+        for (int row = 0; row < expected.getRowCount(); row += 997) {
+            for (int column = 0; column < expected.getColumnNames().size(); column++) {
+                assertEquals(expected.getValue(row, column), actual.getValue(row, column));
+            }
+        }
+    }
+
+    private static void assertSameData(ExcelSheetData expected, ExcelSheetData actual) {
+        assertEquals(expected.getColumnNames(), actual.getColumnNames());
+        assertEquals(expected.getTitles(), actual.getTitles());
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(rows(expected, expected.getColumnNames()), rows(actual, expected.getColumnNames()));
+    }
+
+    private static List<List<String>> rows(RowSource source, List<String> columns) {
+        List<List<String>> rows = new ArrayList<>();
+        source.forEachRow(columns, values -> rows.add(Arrays.asList(values.clone())));
+        return rows;
+    }
+
+    private static byte[] toBytes(ExcelSheetData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            data.writeTo(output);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Every row has a distinct name and number, every second row no number and every third row no phone.
+     */
+    private static ExcelSheetData sheet(String fileName, int rowCount) {
+        ExcelSheetData data = new ExcelSheetData();
+        SheetRowHandler rowHandler = data.rowHandler(fileName, "Sheet1");
+        rowHandler.onRow(0, Arrays.asList("学生姓名", "学号", "家长电话"));
+        for (int row = 1; row <= rowCount; row++) {
+            rowHandler.onRow(row, Arrays.asList("学生" + row,
+                    row % 2 == 0 ? null : "2018" + row,
+                    row % 3 == 0 ? null : "1380000000" + (row % 7)));
+        }
+        return data;
+    }
+}
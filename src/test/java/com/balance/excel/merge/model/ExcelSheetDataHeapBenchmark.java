@@ -0,0 +1,80 @@
+package com.balance.excel.merge.model;
+
+import com.balance.excel.merge.reader.SheetRowHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares heap used by 1M rows in the columnar ExcelSheetData with the former List<Map<String,String>> layout.
+ * Run the main method with a large enough heap, e.g. -Xmx4g.
+ */
+public class ExcelSheetDataHeapBenchmark {
+    private static final int ROW_COUNT = 1_000_000;
+    private static final List<String> TITLES = Arrays.asList(
+            "学校", "年级", "班级", "学生姓名", "学号", "家长姓名", "家长电话", "住址");
+
+    public static void main(String[] args) {
+        long baseline = usedHeap();
+        ExcelSheetData columnar = loadColumnar();
+        long columnarHeap = usedHeap() - baseline;
+        System.out.println("columnar rows:" + columnar.getRowCount() + ", heap:" + columnarHeap / (1024 * 1024) + " MB");
+        columnar = null;
+
+        baseline = usedHeap();
+        List<Map<String, String>> rows = loadRowMaps();
+        long mapHeap = usedHeap() - baseline;
+        System.out.println("map rows:" + rows.size() + ", heap:" + mapHeap / (1024 * 1024) + " MB");
+    }
+
+    private static ExcelSheetData loadColumnar() {
+        ExcelSheetData data = new ExcelSheetData();
+        SheetRowHandler rowHandler = data.rowHandler("benchmark.xlsx", "Sheet1");
+        rowHandler.onRow(0, TITLES);
+        for (int row = 1; row <= ROW_COUNT; row++) {
+            rowHandler.onRow(row, cells(row));
+        }
+        return data;
+    }
+
+    private static List<Map<String, String>> loadRowMaps() {
+        String excelLocation = "benchmark.xlsx/Sheet1";
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int row = 1; row <= ROW_COUNT; row++) {
+            List<String> cells = cells(row);
+            Map<String, String> rowData = new HashMap<>();
+            for (int column = 0; column < TITLES.size(); column++) {
+                rowData.put(TITLES.get(column), cells.get(column).trim());
+            }
+            rowData.put(ExcelSheetData.EXCEL_LOCATION, excelLocation);
+            rows.add(rowData);
+        }
+        return rows;
+    }
+
+    /**
+     * Every cell is a new string, as cells read from a sheet are.
+     */
+    private static List<String> cells(int row) {
+        return Arrays.asList(
+                "第" + (row % 20) + "小学",
+                (row % 6 + 1) + "年级",
+                (row % 10 + 1) + "班",
+                "学生" + row,
+                String.valueOf(20190000 + row),
+                "家长" + row,
+                String.valueOf(13800000000L + row),
+                "某市某区某街道" + (row % 500) + "号");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,149 @@
+package com.balance.excel.merge.model;
+
+import com.balance.excel.merge.reader.SheetRowHandler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExcelSheetDataTest {
+
+    @Test
+    public void rowsAreReadByTitle() {
+        ExcelSheetData data = sheet("a.xlsx", Arrays.asList(" 学生姓名 ", "家长电话", "班级", null, "备注"),
+                Arrays.asList(" 张三 ", "13800000001", "一班", "x"),
+                Arrays.asList("李四", null, "二班"),
+                Arrays.asList(null, null, null),
+                Arrays.asList("王五", "13800000003", "三班"));
+
+        assertEquals(Arrays.asList("学生姓名", "家长电话", "班级"), data.getTitles());
+        assertEquals(Arrays.asList("学生姓名", "家长电话", "班级", ExcelSheetData.EXCEL_LOCATION), data.getColumnNames());
+        // reading stops at the empty row
+        assertEquals(2, data.getRowCount());
+        assertEquals("张三", data.getRow(0).get("学生姓名"));
+        assertEquals("二班", data.getValue(1, data.columnIndex("班级")));
+        assertNull(data.getRow(1).get("家长电话"));
+        assertEquals("a.xlsx/Sheet1", data.getRow(1).get(ExcelSheetData.EXCEL_LOCATION));
+        assertEquals(-1, data.columnIndex("备注"));
+        assertNull(data.getRow(0).get("备注"));
+    }
+
+    @Test
+    public void mergeMatchesColumnsByTitle() {
+        ExcelSheetData data = sheet("a.xlsx", Arrays.asList("学生姓名", "家长电话"),
+                Arrays.asList("张三", "13800000001"));
+        ExcelSheetData other = sheet("b.xlsx", Arrays.asList("班级", "家长电话", "学生姓名"),
+                Arrays.asList("二班", "13800000002", "李四"),
+                Arrays.asList("三班", "13800000003", "王五"));
+
+        assertEquals(3, data.merge(other).getRowCount());
+
+        assertEquals(Arrays.asList("学生姓名", "家长电话", "班级"), data.getTitles());
+        assertEquals(Arrays.asList(
+                Arrays.asList("张三", "13800000001", null, "a.xlsx/Sheet1"),
+                Arrays.asList("李四", "13800000002", "二班", "b.xlsx/Sheet1"),
+                Arrays.asList("王五", "13800000003", "三班", "b.xlsx/Sheet1")),
+                rows(data, Arrays.asList("学生姓名", "家长电话", "班级", ExcelSheetData.EXCEL_LOCATION)));
+    }
+
+    @Test
+    public void forEachRowGivesNullForUnknownTitle() {
+        ExcelSheetData data = sheet("a.xlsx", Arrays.asList("学生姓名", "家长电话"),
+                Arrays.asList("张三", "13800000001"));
+
+        assertEquals(Arrays.asList(Arrays.asList(null, "张三")), rows(data, Arrays.asList("学号", "学生姓名")));
+    }
+
+    @Test
+    public void distinctByPhoneMergesValues() {
+        ExcelSheetData data = sheet("a.xlsx", Arrays.asList("学生姓名", "家长电话", "班级"),
+                Arrays.asList("张三", "13800000001", "一班"),
+                Arrays.asList("李四", "13800000002", "二班"),
+                Arrays.asList("张三丰", "138-0000-0001", "二班"),
+                Arrays.asList("张三", "(138) 0000 0001", "三班"),
+                Arrays.asList("王五", "无", "三班"),
+                Arrays.asList("赵六", "无", "四班"));
+
+        data.distinctByPhone();
+
+        // rows are matched by the digits of the phone, the first phone is kept as it was written
+        assertEquals(Arrays.asList(
+                Arrays.asList("张三;张三丰", "13800000001", "一班;二班;三班"),
+                Arrays.asList("李四", "13800000002", "二班"),
+                Arrays.asList("王五;赵六", "无", "三班;四班")),
+                rows(data, data.getTitles()));
+    }
+
+    /**
+     * Every phone is distinct at first, so the phone column is plain when rows are merged.
+     */
+    @Test
+    public void distinctByPhoneOfPlainColumn() {
+        List<List<String>> rows = new ArrayList<>();
+        for (int row = 0; row < 4000; row++) {
+            rows.add(Arrays.asList("学生" + row, String.format("1380000%04d", row % 2000)));
+        }
+        ExcelSheetData data = sheetOfRows("a.xlsx", Arrays.asList("学生姓名", "家长电话"), rows);
+
+        data.distinctByPhone();
+
+        assertEquals(2000, data.getRowCount());
+        for (int row = 0; row < 2000; row++) {
+            assertEquals("学生" + row + ";学生" + (row + 2000), data.getRow(row).get("学生姓名"));
+            assertEquals(String.format("1380000%04d", row), data.getRow(row).get("家长电话"));
+        }
+    }
+
+    @Test
+    public void distinctByPhoneWithAccumulatedValues() {
+        ExcelSheetData data = sheet("a.xlsx", Arrays.asList("学生姓名", "家长电话", "班级"),
+                Arrays.asList("张三", "13800000001", "一班"),
+                Arrays.asList("张三丰", "13800000001", "一班"),
+                Arrays.asList("张三", "138-0000-0001", "二班"));
+
+        data.distinctByPhone(true);
+
+        // the accumulated values are compared whole, so 张三 is kept apart from 张三丰, the first phone is kept
+        assertEquals(Arrays.asList(Arrays.asList("张三;张三丰", "13800000001", "一班;二班")),
+                rows(data, data.getTitles()));
+    }
+
+    @Test
+    public void emptyTitleRowGivesNoData() {
+        ExcelSheetData data = new ExcelSheetData();
+        SheetRowHandler rowHandler = data.rowHandler("a.xlsx", "Sheet1");
+
+        assertFalse(rowHandler.onRow(0, Arrays.asList(null, "学生姓名")));
+        assertTrue(data.isEmpty());
+        assertTrue(data.getTitles().isEmpty());
+    }
+
+    private static List<List<String>> rows(RowSource source, List<String> titles) {
+        List<List<String>> rows = new ArrayList<>();
+        source.forEachRow(titles, values -> rows.add(Arrays.asList(values.clone())));
+        return rows;
+    }
+
+    @SafeVarargs
+    private static ExcelSheetData sheet(String fileName, List<String> titles, List<String>... rows) {
+        return sheetOfRows(fileName, titles, Arrays.asList(rows));
+    }
+
+    private static ExcelSheetData sheetOfRows(String fileName, List<String> titles, List<List<String>> rows) {
+        ExcelSheetData data = new ExcelSheetData();
+        SheetRowHandler rowHandler = data.rowHandler(fileName, "Sheet1");
+        rowHandler.onRow(0, titles);
+        for (int row = 0; row < rows.size(); row++) {
+            if (!rowHandler.onRow(row + 1, rows.get(row))) {
+                break;
+            }
+        }
+        return data;
+    }
+}
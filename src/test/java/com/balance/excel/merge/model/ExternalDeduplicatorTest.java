@@ -0,0 +1,96 @@
+package com.balance.excel.merge.model;
+
+import com.balance.excel.merge.reader.SheetRowHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExternalDeduplicatorTest {
+    /** far below any partition, so every partition is split down to the last level */
+    private static final long TINY_MEMORY_BUDGET = 1;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sameRowsInSameOrderAsInMemory() throws Exception {
+        assertSameAsInMemory(false);
+    }
+
+    @Test
+    public void sameRowsInSameOrderAsInMemoryWithAccumulatedValues() throws Exception {
+        assertSameAsInMemory(true);
+    }
+
+    private void assertSameAsInMemory(boolean accumulateValues) throws Exception {
+        List<ExcelSheetData> sheets = sheets();
+        ExcelSheetData inMemory = new ExcelSheetData();
+        for (ExcelSheetData sheet : sheets) {
+            inMemory.merge(sheet);
+        }
+        inMemory.distinctByPhone(accumulateValues);
+        List<String> columns = new ArrayList<>(inMemory.getColumnNames());
+        List<String[]> expected = rows(inMemory, columns);
+
+        List<String[]> actual;
+        try (ExternalDeduplicator deduplicator = new ExternalDeduplicator(
+                temporaryFolder.getRoot(), TINY_MEMORY_BUDGET, accumulateValues)) {
+            for (ExcelSheetData sheet : sheets) {
+                deduplicator.add(sheet);
+            }
+            assertEquals(inMemory.getTitles(), deduplicator.getTitles());
+            actual = rows(deduplicator, columns);
+        }
+
+        // 70 phones, the value which is no phone and the rows without phone
+        assertEquals(72, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals("row " + row, Arrays.asList(expected.get(row)), Arrays.asList(actual.get(row)));
+        }
+    }
+
+    private static List<String[]> rows(RowSource source, List<String> columns) {
+        List<String[]> rows = new ArrayList<>();
+        source.forEachRow(columns, values -> rows.add(values.clone()));
+        return rows;
+    }
+
+    /**
+     * Two sheets with the same phones in different formatting, values which are no phone and a sheet without
+     * phone column.
+     */
+    private static List<ExcelSheetData> sheets() {
+        List<List<String>> first = new ArrayList<>();
+        List<List<String>> second = new ArrayList<>();
+        List<List<String>> noPhone = new ArrayList<>();
+        first.add(Arrays.asList("学生姓名", "家长电话", "班级"));
+        second.add(Arrays.asList("家长电话", "学生姓名", "学号"));
+        noPhone.add(Arrays.asList("学生姓名", "学号"));
+        for (int row = 1; row <= 200; row++) {
+            int phone = row % 70;
+            first.add(Arrays.asList("学生" + row, String.format("1380000%04d", phone), "班级" + (row % 3)));
+            second.add(Arrays.asList(String.format("138-0000-%04d", phone), "学生" + (row % 90), "2018" + row));
+            noPhone.add(Arrays.asList("学生" + (row % 10), "2019" + row));
+        }
+        first.add(Arrays.asList("学生201", "未知", "班级1"));
+        second.add(Arrays.asList("未知", "学生202", "2018202"));
+        second.add(Arrays.asList("(138) 0000 0001", "学生203", "2018203"));
+        return Arrays.asList(sheet("a.xlsx", first), sheet("b.xlsx", second), sheet("c.xlsx", noPhone));
+    }
+
+    private static ExcelSheetData sheet(String fileName, List<List<String>> rows) {
+        ExcelSheetData data = new ExcelSheetData();
+        SheetRowHandler rowHandler = data.rowHandler(fileName, "Sheet1");
+        for (int row = 0; row < rows.size(); row++) {
+            rowHandler.onRow(row, rows.get(row));
+        }
+        return data;
+    }
+}
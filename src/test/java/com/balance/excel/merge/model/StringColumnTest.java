@@ -0,0 +1,129 @@
+package com.balance.excel.merge.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StringColumnTest {
+
+    @Test
+    public void fewDistinctValuesStayDictionaryEncoded() {
+        StringColumn column = new StringColumn();
+        for (int row = 0; row < 5000; row++) {
+            column.set(row, "班级" + (row % 10));
+        }
+        column.set(6000, "班级3");
+
+        assertTrue(column.isDictionaryEncoded());
+        assertEquals(10, column.getDictionarySize());
+        assertEquals(column.getCode(3), column.getCode(13));
+        assertNotEquals(column.getCode(3), column.getCode(4));
+        assertEquals("班级3", column.getDictionaryValue(column.getCode(6000)));
+        assertEquals(0, column.getCode(5500));
+        assertNull(column.get(5500));
+        assertNull(column.get(7000));
+        assertEquals("班级7", column.get(4997));
+    }
+
+    @Test
+    public void manyDistinctValuesSwitchToPlain() {
+        StringColumn column = new StringColumn();
+        for (int row = 0; row < 1000; row++) {
+            column.set(row, "学生" + row);
+        }
+        assertTrue(column.isDictionaryEncoded());
+
+        for (int row = 1000; row < 3000; row++) {
+            column.set(row, "学生" + row);
+        }
+        assertFalse(column.isDictionaryEncoded());
+        for (int row = 0; row < 3000; row++) {
+            assertEquals("学生" + row, column.get(row));
+        }
+        assertNull(column.get(3000));
+    }
+
+    @Test
+    public void appendAllTranslatesCodes() {
+        StringColumn target = column(1024, 300, "a");
+        StringColumn source = column(500, 200, "a");
+
+        target.appendAll(source, 1024, 500);
+
+        assertTrue(target.isDictionaryEncoded());
+        assertEquals(300, target.getDictionarySize());
+        assertEquals(target.getCode(199), target.getCode(1024 + 199));
+        for (int row = 0; row < 1524; row++) {
+            assertEquals(row < 1024 ? "a" + row % 300 : "a" + (row - 1024) % 200, target.get(row));
+        }
+    }
+
+    /**
+     * The values of source make the dictionary of target too large, target switches to plain while appending.
+     */
+    @Test
+    public void appendAllSwitchesToPlain() {
+        StringColumn target = column(1024, 500, "a");
+        StringColumn source = column(100, 100, "b");
+
+        target.appendAll(source, 1024, 100);
+
+        assertFalse(target.isDictionaryEncoded());
+        for (int row = 0; row < 1124; row++) {
+            assertEquals(row < 1024 ? "a" + row % 500 : "b" + (row - 1024), target.get(row));
+        }
+    }
+
+    @Test
+    public void appendAllFromPlainColumn() {
+        StringColumn target = column(10, 2, "a");
+        StringColumn source = column(3000, 3000, "b");
+        assertFalse(source.isDictionaryEncoded());
+
+        target.appendAll(source, 20, 3000);
+
+        assertNull(target.get(15));
+        assertEquals("b0", target.get(20));
+        assertEquals("b2999", target.get(3019));
+    }
+
+    @Test
+    public void retainRowsOfBothEncodings() {
+        StringColumn dictionary = column(2000, 10, "a");
+        StringColumn plain = column(2000, 2000, "b");
+        dictionary.set(3000, "a1");
+        plain.set(3000, "b1");
+        int[] rows = {1, 3, 1999, 3000};
+
+        dictionary.retain(rows, rows.length);
+        plain.retain(rows, rows.length);
+
+        assertTrue(dictionary.isDictionaryEncoded());
+        assertFalse(plain.isDictionaryEncoded());
+        assertEquals("a1", dictionary.get(0));
+        assertEquals("a3", dictionary.get(1));
+        assertEquals("a9", dictionary.get(2));
+        assertEquals("a1", dictionary.get(3));
+        assertEquals("b1", plain.get(0));
+        assertEquals("b3", plain.get(1));
+        assertEquals("b1999", plain.get(2));
+        assertEquals("b1", plain.get(3));
+        assertNull(dictionary.get(4));
+        assertNull(plain.get(4));
+    }
+
+    /**
+     * @return a column of rowCount rows with the values prefix + row % distinctCount
+     */
+    private static StringColumn column(int rowCount, int distinctCount, String prefix) {
+        StringColumn column = new StringColumn();
+        for (int row = 0; row < rowCount; row++) {
+            column.set(row, prefix + row % distinctCount);
+        }
+        return column;
+    }
+}
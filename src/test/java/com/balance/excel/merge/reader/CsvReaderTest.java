@@ -0,0 +1,154 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.model.ExcelSheetData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CsvReaderTest {
+    private static final Charset GBK = Charset.forName("GBK");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void quotedFields() throws IOException {
+        ExcelSheetData data = read("quoted.csv", ("姓名,备注,电话\n"
+                + "\"张三,李四\",\"他说\"\"你好\"\"\",13800000000\n"
+                + "\"王五\",\"第一行\n第二行\",\"\"\n").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Arrays.asList("姓名", "备注", "电话"), data.getTitles());
+        assertEquals(2, data.getRowCount());
+        assertRow(data, 0, "张三,李四", "他说\"你好\"", "13800000000");
+        assertRow(data, 1, "王五", "第一行\n第二行", "");
+    }
+
+    @Test
+    public void lineBreaks() throws IOException {
+        ExcelSheetData data = read("crlf.csv", "姓名,电话\r\n张三,13800000000\r\n李四,\r\n王五,13900000000"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Arrays.asList("姓名", "电话"), data.getTitles());
+        assertEquals(3, data.getRowCount());
+        assertRow(data, 0, "张三", "13800000000");
+        assertRow(data, 1, "李四", null);
+        assertRow(data, 2, "王五", "13900000000");
+    }
+
+    @Test
+    public void readingStopsAtEmptyLine() throws IOException {
+        ExcelSheetData data = read("empty-line.csv", "姓名,电话\n张三,13800000000\n\n李四,13900000000\n"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, data.getRowCount());
+    }
+
+    @Test
+    public void tabDelimiter() throws IOException {
+        ExcelSheetData tsv = read("tabs.tsv", "姓名\t备注\n张三\t1,2\n".getBytes(StandardCharsets.UTF_8));
+        assertRow(tsv, 0, "张三", "1,2");
+
+        ExcelSheetData csv = read("tabs.csv", "姓名\t备注\n张三\t1,2\n".getBytes(StandardCharsets.UTF_8));
+        assertRow(csv, 0, "张三", "1,2");
+    }
+
+    @Test
+    public void utf8WithBom() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        bytes.write("姓名,电话\n张三,13800000000\n".getBytes(StandardCharsets.UTF_8));
+        ExcelSheetData data = read("bom.csv", bytes.toByteArray());
+
+        assertEquals(Arrays.asList("姓名", "电话"), data.getTitles());
+        assertRow(data, 0, "张三", "13800000000");
+    }
+
+    @Test
+    public void gbk() throws IOException {
+        ExcelSheetData data = read("gbk.csv", "姓名,班级\n张三,三年级二班\n".getBytes(GBK));
+
+        assertEquals(Arrays.asList("姓名", "班级"), data.getTitles());
+        assertRow(data, 0, "张三", "三年级二班");
+    }
+
+    /**
+     * Moves a row with an escaped quote and multi-byte characters over the end of the first chunk, so every
+     * position of the row falls on the boundary once.
+     */
+    @Test
+    public void fieldsAcrossChunkBoundary() throws IOException {
+        String row = "\"引号\"\"内\",中文字段\n";
+        int rowLength = row.getBytes(StandardCharsets.UTF_8).length;
+        for (int offset = 1; offset <= rowLength; offset++) {
+            String content = padding("名称,备注\n", CsvReader.BUFFER_SIZE - offset) + row + "末行,结束\n";
+            ExcelSheetData data = read("boundary" + offset + ".csv", content.getBytes(StandardCharsets.UTF_8));
+
+            int lastRow = data.getRowCount() - 1;
+            assertRow(data, lastRow - 1, "引号\"内", "中文字段");
+            assertRow(data, lastRow, "末行", "结束");
+        }
+    }
+
+    @Test
+    public void textOnlyWithTextExtension() throws IOException {
+        byte[] text = "姓名,电话\n".getBytes(StandardCharsets.UTF_8);
+        assertEquals(WorkbookFormat.CSV, WorkbookSource.of(write("a.csv", text)).getFormat());
+        assertEquals(WorkbookFormat.CSV, WorkbookSource.of(write("a.TSV", text)).getFormat());
+        assertEquals(WorkbookFormat.CSV, WorkbookSource.of(write("a.txt", text)).getFormat());
+        assertEquals(WorkbookFormat.UNKNOWN, WorkbookSource.of(write("a.xml", text)).getFormat());
+        assertEquals(WorkbookFormat.UNKNOWN, WorkbookSource.of(write("a", text)).getFormat());
+        assertEquals(WorkbookFormat.UNKNOWN, WorkbookSource.of(write("b.csv", new byte[]{'a', 0, 'b'})).getFormat());
+    }
+
+    /**
+     * @return head followed by rows of filler, so the result has length bytes in UTF-8
+     */
+    private static String padding(String head, int length) {
+        StringBuilder content = new StringBuilder(head);
+        int remaining = length - head.getBytes(StandardCharsets.UTF_8).length;
+        while (remaining >= 200) {
+            content.append(fillerRow(100));
+            remaining -= 100;
+        }
+        content.append(fillerRow(remaining));
+        return content.toString();
+    }
+
+    private static String fillerRow(int length) {
+        char[] filler = new char[length - 3];
+        Arrays.fill(filler, 'x');
+        return "f," + new String(filler) + "\n";
+    }
+
+    private static void assertRow(ExcelSheetData data, int row, String... values) {
+        List<String> actual = new ArrayList<>();
+        for (String title : data.getTitles()) {
+            actual.add(data.getRow(row).get(title));
+        }
+        assertEquals(Arrays.asList(values), actual);
+    }
+
+    private ExcelSheetData read(String fileName, byte[] content) throws IOException {
+        List<ExcelSheetData> sheets = new CsvReader().read(write(fileName, content));
+        assertEquals(1, sheets.size());
+        return sheets.get(0);
+    }
+
+    private File write(String fileName, byte[] content) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), fileName);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
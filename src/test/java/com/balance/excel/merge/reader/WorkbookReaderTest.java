@@ -0,0 +1,154 @@
+package com.balance.excel.merge.reader;
+
+import com.balance.excel.merge.ExcelMergerTest;
+import com.balance.excel.merge.model.ExcelSheetData;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The streaming readers have to give the same sheets as the DOM reader on the same workbook.
+ */
+public class WorkbookReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void xssfStreamingReaderMatchesDom() throws IOException {
+        File file = writeWorkbook(new XSSFWorkbook(), "classes.xlsx");
+        assertEquals(WorkbookFormat.OOXML, WorkbookSource.of(file).getFormat());
+        List<ExcelSheetData> expected = new DomWorkbookReader(WorkbookFormat.OOXML).read(file);
+        assertExpectedSheets(expected, "classes.xlsx");
+
+        assertSameSheets(expected, new XssfStreamingReader().read(file));
+        ExecutorService sheetExecutor = Executors.newFixedThreadPool(2);
+        try {
+            assertSameSheets(expected, new XssfStreamingReader(sheetExecutor).read(file));
+        } finally {
+            sheetExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void hssfEventReaderMatchesDom() throws IOException {
+        File file = writeWorkbook(new HSSFWorkbook(), "classes.xls");
+        assertEquals(WorkbookFormat.OLE2, WorkbookSource.of(file).getFormat());
+        List<ExcelSheetData> expected = new DomWorkbookReader(WorkbookFormat.OLE2).read(file);
+        assertExpectedSheets(expected, "classes.xls");
+
+        assertSameSheets(expected, new HssfEventReader().read(file));
+    }
+
+    /**
+     * A word document passes the header check as OOXML, reading it fails inside POI.
+     */
+    @Test
+    public void documentWithoutWorkbookGivesNoSheets() throws IOException {
+        File file = temporaryFolder.newFile("notes.xlsx");
+        ExcelMergerTest.writeDocument(file);
+        WorkbookSource source = WorkbookSource.of(file);
+        assertEquals(WorkbookFormat.OOXML, source.getFormat());
+
+        assertTrue(source.readSheets(true).isEmpty());
+        assertTrue(source.readSheets(false).isEmpty());
+    }
+
+    /**
+     * Checks the DOM result itself, so the readers are not compared on empty sheets.
+     */
+    private static void assertExpectedSheets(List<ExcelSheetData> sheets, String fileName) {
+        assertEquals(2, sheets.size());
+        ExcelSheetData first = sheets.get(0);
+        assertEquals(Arrays.asList("学生姓名", "家长电话", "年龄", "住校"), first.getTitles());
+        assertEquals(3, first.getRowCount());
+        assertEquals("张三", first.getRow(0).get("学生姓名"));
+        assertEquals("13800000001", first.getRow(0).get("家长电话"));
+        assertEquals("TRUE", first.getRow(0).get("住校"));
+        assertEquals("", first.getRow(1).get("家长电话"));
+        assertEquals("王五", first.getRow(2).get("学生姓名"));
+        assertEquals(fileName + "/一班", first.getRow(2).get(ExcelSheetData.EXCEL_LOCATION));
+        ExcelSheetData second = sheets.get(1);
+        assertEquals(Arrays.asList("学生姓名", "班级"), second.getTitles());
+        assertEquals(2, second.getRowCount());
+    }
+
+    private static void assertSameSheets(List<ExcelSheetData> expected, List<ExcelSheetData> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            List<String> columns = expected.get(i).getColumnNames();
+            assertEquals(columns, actual.get(i).getColumnNames());
+            assertEquals(expected.get(i).getRowCount(), actual.get(i).getRowCount());
+            assertEquals(rows(expected.get(i), columns), rows(actual.get(i), columns));
+        }
+    }
+
+    private static List<List<String>> rows(ExcelSheetData data, List<String> columns) {
+        List<List<String>> rows = new ArrayList<>();
+        data.forEachRow(columns, values -> rows.add(Arrays.asList(values.clone())));
+        return rows;
+    }
+
+    /**
+     * Writes two sheets with text, numeric, boolean, blank and missing cells. The first sheet has a
+     * missing row, the rows after it are not read.
+     */
+    private File writeWorkbook(Workbook workbook, String fileName) throws IOException {
+        File file = temporaryFolder.newFile(fileName);
+        try (Workbook w = workbook; OutputStream output = new FileOutputStream(file)) {
+            Sheet first = w.createSheet("一班");
+            Row title = first.createRow(0);
+            title.createCell(0).setCellValue("学生姓名");
+            title.createCell(1).setCellValue("家长电话");
+            title.createCell(2).setCellValue("年龄");
+            title.createCell(3).setCellValue("住校");
+
+            Row row = first.createRow(1);
+            row.createCell(0).setCellValue("张三");
+            row.createCell(1).setCellValue("13800000001");
+            row.createCell(2).setCellValue(7);
+            row.createCell(3).setCellValue(true);
+            row = first.createRow(2);
+            row.createCell(0).setCellValue("李四");
+            row.createCell(1);
+            row.createCell(2).setCellValue(8.5);
+            row = first.createRow(3);
+            row.createCell(0).setCellValue(" 王五 ");
+            row.createCell(3).setCellValue(false);
+            row.createCell(6).setCellValue("标题外");
+            first.createRow(5).createCell(0).setCellValue("赵六");
+
+            Sheet second = w.createSheet("二班");
+            title = second.createRow(0);
+            title.createCell(0).setCellValue("学生姓名");
+            title.createCell(1).setCellValue("班级");
+            row = second.createRow(1);
+            row.createCell(0).setCellValue("孙七");
+            row.createCell(1).setCellValue("二班");
+            row = second.createRow(2);
+            row.createCell(0).setCellValue("周八");
+            row.createCell(1).setCellValue(2);
+
+            w.write(output);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,87 @@
+package com.balance.excel.merge.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void putAndGet() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(1));
+        map.put(1, 10);
+        map.put(-1, 20);
+        map.put(Long.MAX_VALUE, 30);
+        assertEquals(10, map.get(1));
+        assertEquals(20, map.get(-1));
+        assertEquals(30, map.get(Long.MAX_VALUE));
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(2));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void zeroIsAKey() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(0));
+        map.put(0, 0);
+        assertEquals(0, map.get(0));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void putReplacesValue() {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put(7, 1);
+        map.put(7, 2);
+        assertEquals(2, map.get(7));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void keepsEntriesAcrossResizes() {
+        LongIntHashMap map = new LongIntHashMap(1);
+        int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            map.put(key(i), i);
+        }
+        assertEquals(count, map.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, map.get(key(i)));
+        }
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(key(count)));
+    }
+
+    @Test
+    public void collidingKeysAreProbed() {
+        // a map for 8 entries has 16 slots, these keys all hash to the slot of key 0
+        LongIntHashMap map = new LongIntHashMap(8);
+        long[] keys = new long[8];
+        int slot = LongIntHashMap.hash(0) & 15;
+        for (long key = 0, count = 0; count < keys.length; key++) {
+            if ((LongIntHashMap.hash(key) & 15) == slot) {
+                keys[(int) count++] = key;
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i]));
+        }
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(keys[keys.length - 1] + 1));
+        assertEquals(keys.length, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minValueIsNoKey() {
+        new LongIntHashMap().put(Long.MIN_VALUE, 1);
+    }
+
+    /**
+     * packed phones of sequential numbers, so neighbouring keys differ only in few bits
+     */
+    private static long key(int i) {
+        return ((13800000000L + i) << 5) | 11;
+    }
+}
@@ -0,0 +1,47 @@
+package com.balance.excel.merge.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PhoneUtilsTest {
+
+    @Test
+    public void formattedPhonesPackToSameKey() {
+        long key = PhoneUtils.packPhone("13800000000");
+        assertTrue(key >= 0);
+        assertEquals(key, PhoneUtils.packPhone("138-0000-0000"));
+        assertEquals(key, PhoneUtils.packPhone("138 0000 0000"));
+        assertEquals(key, PhoneUtils.packPhone("(138)0000-0000"));
+        assertEquals(key, PhoneUtils.packPhone("+13800000000"));
+    }
+
+    @Test
+    public void leadingZerosAreKept() {
+        assertNotEquals(PhoneUtils.packPhone("138"), PhoneUtils.packPhone("0138"));
+        assertNotEquals(PhoneUtils.packPhone("0"), PhoneUtils.packPhone("00"));
+        assertNotEquals(PhoneUtils.packPhone("010-12345678"), PhoneUtils.packPhone("10-12345678"));
+        assertEquals(PhoneUtils.packPhone("010-12345678"), PhoneUtils.packPhone("01012345678"));
+    }
+
+    @Test
+    public void packsAtMostSeventeenDigits() {
+        long max = PhoneUtils.packPhone("99999999999999999");
+        assertTrue(max >= 0);
+        assertNotEquals(max, PhoneUtils.packPhone("99999999999999998"));
+        assertEquals(-1, PhoneUtils.packPhone("999999999999999999"));
+        assertEquals(-1, PhoneUtils.packPhone("100000000000000000"));
+    }
+
+    @Test
+    public void otherValuesAreNotPacked() {
+        assertEquals(-1, PhoneUtils.packPhone(null));
+        assertEquals(-1, PhoneUtils.packPhone(""));
+        assertEquals(-1, PhoneUtils.packPhone("--"));
+        assertEquals(-1, PhoneUtils.packPhone("未知"));
+        assertEquals(-1, PhoneUtils.packPhone("1380000000x"));
+        assertEquals(-1, PhoneUtils.packPhone("13800000000;13900000000"));
+    }
+}